@@ -0,0 +1,38 @@
+package it.matlice.matlichess.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the model with the GC profiler, which adds the bytes allocated per operation
+ * (gc.alloc.rate.norm) to the time per operation.
+ * The benchmarks are built by the pom.xml of the bench directory, together with the classes of src, into a single
+ * jar, and the arguments are passed to JMH as they are. The baseline to compare the next runs with is written by
+ * <pre>
+ * cd bench
+ * mvn -B package
+ * java -jar target/benchmarks.jar -rf json -rff baseline.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks
+     *
+     * @param args JMH command line options, a regular expression selects only some benchmarks, all of them by default
+     * @throws Exception if the options are not valid or JMH fails
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty())
+            options.include(BenchmarkRunner.class.getPackageName() + ".*Benchmark");
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,84 @@
+package it.matlice.matlichess.bench;
+
+import it.matlice.matlichess.model.Chessboard;
+
+/**
+ * Fixed positions the benchmarks run over, grouped by the phase of the game.
+ * Every phase has the same number of positions, so that the times per operation can be compared
+ */
+public final class Corpus {
+
+    public static final int SIZE = 4;
+
+    public static final String[] OPENING = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2",
+            "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+            "rnbqkb1r/ppp1pppp/5n2/3p4/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 1 3",
+    };
+
+    public static final String[] MIDDLEGAME = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+    };
+
+    public static final String[] ENDGAME = {
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 50",
+            "6k1/5ppp/8/8/8/8/r4PPP/1R4K1 w - - 0 40",
+            "8/5pk1/6p1/8/2Q5/6P1/5PK1/3q4 b - - 3 60",
+    };
+
+    private Corpus() {
+    }
+
+    /**
+     * Returns the positions of a phase of the game
+     *
+     * @param phase "opening", "middlegame" or "endgame"
+     * @return the FENs of the phase
+     */
+    public static String[] fens(String phase) {
+        switch (phase) {
+            case "opening":
+                return OPENING;
+            case "middlegame":
+                return MIDDLEGAME;
+            case "endgame":
+                return ENDGAME;
+            default:
+                throw new IllegalArgumentException(phase);
+        }
+    }
+
+    /**
+     * Creates a chessboard for every position of a phase of the game
+     *
+     * @param phase "opening", "middlegame" or "endgame"
+     * @return the chessboards
+     */
+    public static Chessboard[] chessboards(String phase) {
+        String[] fens = fens(phase);
+        Chessboard[] chessboards = new Chessboard[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            chessboards[i] = new Chessboard();
+            chessboards[i].setPosition(fens[i]);
+        }
+        return chessboards;
+    }
+
+    /**
+     * Picks a legal move of every position, to be played by the benchmarks that change the position
+     *
+     * @param chessboards the positions
+     * @return the first legal move of every position
+     */
+    public static int[] moves(Chessboard[] chessboards) {
+        int[] moves = new int[chessboards.length];
+        for (int i = 0; i < chessboards.length; i++) moves[i] = chessboards[i].getLegalMoves().get(0);
+        return moves;
+    }
+
+}
@@ -0,0 +1,94 @@
+package it.matlice.matlichess.bench;
+
+import it.matlice.matlichess.model.Bitboard;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.MoveBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and validation over the corpus, the time of an operation is the time of a single position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String phase;
+
+    private Chessboard[] chessboards;
+    // the move played in every position, picked once so that finding it is not measured
+    private int[] played;
+    private final MoveBuffer moves = new MoveBuffer();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chessboards = Corpus.chessboards(phase);
+        played = Corpus.moves(chessboards);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public int getAvailableMoves() {
+        int count = 0;
+        for (Chessboard c : chessboards) {
+            moves.clear();
+            c.getAvailableMoves(moves);
+            count += moves.size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public int validate() {
+        // the patterns of all the pieces of the player who has to move, validated one by one
+        int count = 0;
+        for (Chessboard c : chessboards) {
+            moves.clear();
+            for (long own = c.getColorBitboard(c.getTurn()); own != 0; own &= own - 1) {
+                int square = Bitboard.first(own);
+                c.getPieceAt(square).unvalidated_move_pattern(c, square, moves).validate();
+            }
+            count += moves.size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void isUnderCheck(Blackhole bh) {
+        for (Chessboard c : chessboards) {
+            bh.consume(c.getKing(c.getTurn()).isUnderCheck(c));
+            bh.consume(c.getKing(c.getTurn().opponent()).isUnderCheck(c));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void makeUnmake() {
+        for (int i = 0; i < chessboards.length; i++) {
+            chessboards[i].makeMove(played[i]);
+            chessboards[i].unmakeMove();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void getGameState(Blackhole bh) {
+        // the state is asked after every move, when nothing about the new position is known yet;
+        // makeUnmake measures the part of the time spent moving
+        for (int i = 0; i < chessboards.length; i++) {
+            chessboards[i].makeMove(played[i]);
+            bh.consume(chessboards[i].getGameState());
+            chessboards[i].unmakeMove();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package it.matlice.matlichess.bench;
+
+import it.matlice.matlichess.model.Chessboard;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying, writing and reading positions over the corpus, the time of an operation is the time of a single position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String phase;
+
+    private String[] fens;
+    private Chessboard[] chessboards;
+    // the move played in every position, picked once so that finding it is not measured
+    private int[] played;
+    private final Chessboard target = new Chessboard();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fens = Corpus.fens(phase);
+        chessboards = Corpus.chessboards(phase);
+        played = Corpus.moves(chessboards);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void cloneChessboard(Blackhole bh) {
+        for (Chessboard c : chessboards) bh.consume(c.clone());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void toFEN(Blackhole bh) {
+        // the FEN is kept for the position, this is the cost of asking it again
+        for (Chessboard c : chessboards) bh.consume(c.toFEN());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void toFENAfterMove(Blackhole bh) {
+        // a move changes the position, so the touched ranks are written again
+        for (int i = 0; i < chessboards.length; i++) {
+            chessboards[i].makeMove(played[i]);
+            bh.consume(chessboards[i].toFEN());
+            chessboards[i].unmakeMove();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void setPosition(Blackhole bh) {
+        for (String fen : fens) {
+            target.setPosition(fen);
+            bh.consume(target.getPositionKey());
+        }
+    }
+
+}
@@ -67,7 +67,7 @@ public class EntryPoint extends JFrame implements ActionListener {
      * @param args no args :( ):
      */
     public static void main(String[] args) {
-        Class<? extends PlayerInterface>[] players = new Class[]{PhysicalPlayer.class, StockfishPlayer.class, NetworkPlayer.class};
+        Class<? extends PlayerInterface>[] players = new Class[]{PhysicalPlayer.class, StockfishPlayer.class, AlphaBetaPlayer.class, MonteCarloPlayer.class, NetworkPlayer.class};
         new EntryPoint(players).startApplication();
     }
 
@@ -98,7 +98,7 @@ public class EntryPoint extends JFrame implements ActionListener {
     }
 
     /**
-     * Given two players starts the game and keep it playing until mainloop() returns false
+     * Given two players starts the game and keep it playing until mainloop() returns false, then releases the players
      *
      * @param white white player
      * @param black black player
@@ -108,6 +108,7 @@ public class EntryPoint extends JFrame implements ActionListener {
             View.getInstance().initialize();
             Game.getInstance(white, black, new PhysicalPlayer()).setup();
             while (Game.getInstance().mainloop());
+            Game.getInstance().close();
         });
         t.start();
     }
@@ -4,12 +4,22 @@ import it.matlice.matlichess.exceptions.ChessboardLocationException;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Class to describe a particular coordinate on a chessboard
+ * Locations are immutable, so the model uses the 64 shared instances returned by {@link #of(int, int)} instead of
+ * creating new ones
  */
 public class Location {
+
+    // the canonical instances, indexed by square (row * 8 + col)
+    private static final Location[] SQUARES = new Location[64];
+
+    static {
+        for (int square = 0; square < 64; square++)
+            SQUARES[square] = new Location(square & 7, square >>> 3);
+    }
+
     private final int col;
     private final int row;
 
@@ -34,16 +44,66 @@ public class Location {
         if (this.col < 0 || this.col > 7) throw new ChessboardLocationException();
     }
 
+    /**
+     * Returns the shared instance of a coordinate
+     *
+     * @param col the column, from 0 to 7
+     * @param row the row, from 0 to 7
+     * @return the location
+     */
+    public static Location of(int col, int row) {
+        if (row < 0 || row > 7 || col < 0 || col > 7) throw new ChessboardLocationException();
+        return SQUARES[(row << 3) | col];
+    }
+
+    /**
+     * Returns the shared instance of a square index
+     *
+     * @param square the square index, row * 8 + col
+     * @return the location
+     */
+    public static Location of(int square) {
+        return SQUARES[square];
+    }
+
+    /**
+     * Returns the shared instance of a coordinate in the official notation
+     *
+     * @param location String containing the official notation, like "a1"
+     * @return the location
+     */
+    public static Location of(String location) {
+        if (location.length() != 2) throw new ChessboardLocationException();
+        return SQUARES[_parse_square(location, 0)];
+    }
+
+    /**
+     * Reads a coordinate in the official notation, upper or lower case, straight from the characters
+     *
+     * @param text  the text containing the coordinate
+     * @param start the index of the column letter, the row digit follows it
+     * @return the square index, row * 8 + col
+     * @throws ChessboardLocationException if the characters are not a coordinate
+     */
+    private static int _parse_square(CharSequence text, int start) {
+        int col = (text.charAt(start) & 0x5F) - 'A';
+        int row = text.charAt(start + 1) - '1';
+        if (row < 0 || row > 7 || col < 0 || col > 7) throw new ChessboardLocationException();
+        return (row << 3) | col;
+    }
+
     /**
      * Return a list of two locations, to represent a move
      * example: ["A4", "C6"]
+     * The short name of the piece a pawn is promoted to can follow the locations, like in "E7E8N", it is ignored here
      *
      * @param move
      * @return the [from, to] list representing the move
      */
     public static List<Location> fromExtendedMove(String move) {
-        assert move.length() == 4;
-        return Arrays.asList(new Location(move.substring(0, 2)), new Location(move.substring(2, 4)));
+        assert move.length() == 4 || move.length() == 5;
+        if (move.length() < 4) throw new ChessboardLocationException();
+        return Arrays.asList(SQUARES[_parse_square(move, 0)], SQUARES[_parse_square(move, 2)]);
     }
 
     /**
@@ -73,6 +133,15 @@ public class Location {
         return row;
     }
 
+    /**
+     * Returns the square index of the location, row * 8 + col
+     *
+     * @return the square index, from 0 to 63
+     */
+    public int square() {
+        return (row << 3) | col;
+    }
+
     /**
      * Returns whether two locations are identical, so if they represent the same cell
      *
@@ -96,7 +165,7 @@ public class Location {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(col, row);
+        return (row << 3) | col;
     }
 
     /**
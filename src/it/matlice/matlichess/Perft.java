@@ -0,0 +1,253 @@
+package it.matlice.matlichess;
+
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import it.matlice.settings.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless tool that counts the leaf nodes of the move tree of a position (perft), to verify the move generator against
+ * the known counts and to measure its speed.
+ * The moves of the root are counted in parallel on a {@link ForkJoinPool}, each one on its own copy of the chessboard,
+ * and the counts of the subtrees can be kept in a table shared by the threads, indexed by the position key
+ * <p>
+ * Usage: Perft [--divide] [--cache megabytes] [--threads n] depth [fen]
+ * or:    Perft [--cache megabytes] [--threads n] --suite depth
+ */
+public class Perft {
+
+    // the standard perft positions and their counts from depth 1 on
+    private static final String[] SUITE_POSITIONS = {
+            Settings.STARTING_POSITION_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+    private static final long[][] SUITE_COUNTS = {
+            {20, 400, 8902, 197281, 4865609, 119060324},
+            {48, 2039, 97862, 4085603, 193690690},
+            {14, 191, 2812, 43238, 674624, 11030083, 178633661},
+            {6, 264, 9467, 422333, 15833292},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551},
+    };
+
+    private final ForkJoinPool pool;
+    // the node counts of the subtrees, an entry is the key xor the count followed by the count,
+    // so that an entry torn by two threads writing at once is never taken for a valid one
+    private final long[] table;
+    private final int tableMask;
+
+    /**
+     * Creates a counter
+     *
+     * @param threads   the number of threads the moves of the root are shared among
+     * @param cacheSize the megabytes of the table of the subtree counts, 0 to count every subtree again
+     */
+    public Perft(int threads, int cacheSize) {
+        this.pool = new ForkJoinPool(threads);
+        int entries = cacheSize > 0 ? Integer.highestOneBit((int) Math.min((cacheSize * 1024L * 1024L) / 16, 1 << 26)) : 0;
+        this.table = entries > 0 ? new long[entries * 2] : null;
+        this.tableMask = entries - 1;
+    }
+
+    /**
+     * Counts the leaf nodes of every move of the root
+     *
+     * @param fen   the position
+     * @param depth the depth of the tree, at least 1
+     * @return the count of every root move, in the UCI notation, sorted by move
+     * @throws InvalidFenException if the position can't be read
+     */
+    public TreeMap<String, Long> divide(String fen, int depth) {
+        Chessboard root = new Chessboard();
+        root.setPosition(fen);
+        MoveBuffer moves = root.getLegalMoves();
+
+        List<RootMove> tasks = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) tasks.add(new RootMove(root.clone(), moves.get(i), depth));
+        for (RootMove task : tasks) pool.execute(task);
+
+        TreeMap<String, Long> counts = new TreeMap<>();
+        for (RootMove task : tasks) counts.put(Move.toString(task.move), task.join());
+        return counts;
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of a position
+     *
+     * @param fen   the position
+     * @param depth the depth of the tree, at least 1
+     * @return the number of leaf nodes
+     * @throws InvalidFenException if the position can't be read
+     */
+    public long count(String fen, int depth) {
+        long nodes = 0;
+        for (long n : divide(fen, depth).values()) nodes += n;
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes of the subtree of the current position, the moves are made and taken back on the chessboard
+     *
+     * @param c       the chessboard
+     * @param buffers a move buffer for every depth
+     * @param depth   the remaining depth, at least 1
+     * @return the number of leaf nodes
+     */
+    private long _count(Chessboard c, MoveBuffer[] buffers, int depth) {
+        // the same position has a different count at every depth
+        long key = c.getPositionKey() ^ (depth * 0x9E3779B97F4A7C15L);
+        int entry = ((int) key & tableMask) * 2;
+        if (depth > 1 && table != null && (table[entry] ^ table[entry + 1]) == key) return table[entry + 1];
+
+        MoveBuffer moves = buffers[depth];
+        moves.clear();
+        c.getAvailableMoves(moves);
+        // the leaves are not visited, their number is the number of moves
+        if (depth == 1) return moves.size();
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            c.makeMove(moves.get(i));
+            nodes += _count(c, buffers, depth - 1);
+            c.unmakeMove();
+        }
+
+        if (table != null) {
+            table[entry] = key ^ nodes;
+            table[entry + 1] = nodes;
+        }
+        return nodes;
+    }
+
+    /**
+     * The subtree of a move of the root, counted on its own chessboard
+     */
+    private class RootMove extends RecursiveTask<Long> {
+        private final Chessboard chessboard;
+        private final int move;
+        private final int depth;
+
+        RootMove(Chessboard chessboard, int move, int depth) {
+            this.chessboard = chessboard;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth == 1) return 1L;
+            MoveBuffer[] buffers = new MoveBuffer[depth];
+            for (int i = 1; i < depth; i++) buffers[i] = new MoveBuffer();
+            chessboard.makeMove(move);
+            return _count(chessboard, buffers, depth - 1);
+        }
+    }
+
+    /**
+     * Prints the nodes, the time and the speed of a count
+     *
+     * @param nodes   the counted nodes
+     * @param elapsed the nanoseconds of the count
+     */
+    private static void _print_speed(long nodes, long elapsed) {
+        System.out.printf("nodes %d, %d ms, %d nodes/s%n", nodes, elapsed / 1_000_000, nodes * 1_000_000_000L / Math.max(elapsed, 1));
+    }
+
+    /**
+     * Runs the tool, see the class description for the arguments
+     *
+     * @param args the options, the depth and the FEN, whose fields can be separate arguments
+     */
+    public static void main(String[] args) {
+        boolean divide = false;
+        boolean suite = false;
+        int cache = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("--"); i++) {
+                switch (args[i]) {
+                    case "--divide":
+                        divide = true;
+                        break;
+                    case "--suite":
+                        suite = true;
+                        break;
+                    case "--cache":
+                        cache = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+            int depth = Integer.parseInt(args[i++]);
+            if (depth < 1 || threads < 1 || cache < 0) throw new IllegalArgumentException();
+            String fen = i < args.length ? String.join(" ", List.of(args).subList(i, args.length)) : Settings.STARTING_POSITION_FEN;
+
+            Perft perft = new Perft(threads, cache);
+            if (suite) System.exit(perft._run_suite(depth) ? 0 : 1);
+
+            long start = System.nanoTime();
+            long nodes = 0;
+            if (divide) {
+                for (Map.Entry<String, Long> count : perft.divide(fen, depth).entrySet()) {
+                    System.out.println(count.getKey() + ": " + count.getValue());
+                    nodes += count.getValue();
+                }
+            } else nodes = perft.count(fen, depth);
+            _print_speed(nodes, System.nanoTime() - start);
+            perft.pool.shutdown();
+        } catch (InvalidFenException e) {
+            System.err.println("Invalid FEN: " + e.getMessage());
+            System.exit(2);
+        } catch (RuntimeException e) {
+            System.err.println("Usage: Perft [--divide] [--cache megabytes] [--threads n] depth [fen]");
+            System.err.println("       Perft [--cache megabytes] [--threads n] --suite depth");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Counts the standard positions up to a depth and compares the counts with the known ones
+     *
+     * @param maxDepth the deepest count, the positions whose count is not known that deep stop before
+     * @return true if all the counts are right
+     */
+    private boolean _run_suite(int maxDepth) {
+        boolean ok = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+        for (int p = 0; p < SUITE_POSITIONS.length; p++) {
+            int depth = Math.min(maxDepth, SUITE_COUNTS[p].length);
+            long start = System.nanoTime();
+            long nodes = count(SUITE_POSITIONS[p], depth);
+            long elapsed = System.nanoTime() - start;
+            boolean right = nodes == SUITE_COUNTS[p][depth - 1];
+            ok &= right;
+            totalNodes += nodes;
+            totalTime += elapsed;
+            System.out.printf("%s depth %d: %s (expected %d) ", SUITE_POSITIONS[p], depth, right ? "ok" : "WRONG", SUITE_COUNTS[p][depth - 1]);
+            _print_speed(nodes, elapsed);
+        }
+        System.out.print("total ");
+        _print_speed(totalNodes, totalTime);
+        pool.shutdown();
+        return ok;
+    }
+
+}
@@ -0,0 +1,138 @@
+package it.matlice.matlichess.controller;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.engine.Search;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.PositionSnapshot;
+import it.matlice.matlichess.view.ConfigurationPanel;
+import it.matlice.matlichess.view.PieceView;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+
+/**
+ * Cpu player implementation that runs an alpha-beta search written in Java, so it doesn't need the native library of
+ * Stockfish. The search uses as many threads as configured, by default one for every core
+ */
+public class AlphaBetaPlayer implements PlayerInterface {
+    // the megabytes of the transposition table shared by the threads
+    private static final int TABLE_SIZE = 64;
+
+    private final int depth;
+    private final int time;
+    // null once the player is closed
+    private volatile Search search;
+    private volatile boolean interrupted;
+
+    /**
+     * Creates the player
+     *
+     * @param depth   the deepest iteration of the search
+     * @param time    the milliseconds of the search of every move
+     * @param threads the number of threads searching at once
+     */
+    public AlphaBetaPlayer(int depth, int time, int threads) {
+        this.depth = depth;
+        this.time = time;
+        this.search = new Search(threads, TABLE_SIZE);
+    }
+
+    public static ConfigurationPanel getConfigurationInterface() {
+        return new ConfigurationPanel() {
+            private JSpinner depth;
+            private JSpinner time;
+            private JSpinner threads;
+
+            @Override
+            public PlayerInterface getInstance() {
+                return new AlphaBetaPlayer((Integer) this.depth.getValue(), (Integer) this.time.getValue(), (Integer) this.threads.getValue());
+            }
+
+            @Override
+            public void buildPanel() {
+                SpinnerModel depthModel = new SpinnerNumberModel(64, 1, Search.MAX_PLY - 1, 1);
+                SpinnerModel timeModel = new SpinnerNumberModel(3000, 100, Integer.MAX_VALUE, 100);
+                SpinnerModel threadsModel = new SpinnerNumberModel(Runtime.getRuntime().availableProcessors(), 1, 256, 1);
+                this.depth = new JSpinner(depthModel);
+                this.depth.setPreferredSize(new Dimension(70, 24));
+                this.time = new JSpinner(timeModel);
+                this.time.setPreferredSize(new Dimension(70, 24));
+                this.threads = new JSpinner(threadsModel);
+                this.threads.setPreferredSize(new Dimension(70, 24));
+                this.add(new Label("Depth:"));
+                this.add(depth);
+                this.add(new Label("Time (ms):"));
+                this.add(time);
+                this.add(new Label("Threads:"));
+                this.add(threads);
+            }
+        };
+    }
+
+    public static String getName() {
+        return "CPU (Java)";
+    }
+
+    @Override
+    public void setColor(PieceColor color) {
+    }
+
+    @Override
+    public String waitForUserMove() throws InterruptedException {
+        interrupted = false;
+        Search search = this.search;
+        if (search == null) throw new InterruptedException();
+        PositionSnapshot position = Game.getInstance().getSnapshot();
+        // an interrupt that comes before the search starts is seen through the flag, the call to stop could be forgotten
+        int move = search.search(position.getFen(true), position.getPositionHistory(), depth, time, () -> interrupted);
+        if (interrupted || move == Move.NONE) throw new InterruptedException();
+        return Move.toString(move);
+    }
+
+    @Override
+    public void setPosition(ArrayList<PieceView> pieces) {
+    }
+
+    @Override
+    public void setMove(String move) {
+    }
+
+    @Override
+    public void setTurn(PieceColor turn) {
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted = true;
+        Search search = this.search;
+        if (search != null) search.stop();
+    }
+
+    @Override
+    public void close() {
+        Search search = this.search;
+        this.search = null;
+        if (search != null) {
+            search.stop();
+            search.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isInteractive() {
+        return false;
+    }
+
+    @Override
+    public boolean setState(GameState state, boolean generic, PlayerInterface opponent) {
+        return opponent.setState(state, generic, true);
+    }
+
+    @Override
+    public boolean setState(GameState state, boolean generic, Boolean other_result) {
+        return other_result;
+    }
+
+}
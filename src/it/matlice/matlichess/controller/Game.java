@@ -4,14 +4,13 @@ import it.matlice.matlichess.GameState;
 import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.controller.net.PositionInit;
+import it.matlice.matlichess.exceptions.InvalidFenException;
 import it.matlice.matlichess.exceptions.InvalidMoveException;
 import it.matlice.matlichess.exceptions.InvalidTurnException;
+import it.matlice.matlichess.model.Bitboard;
 import it.matlice.matlichess.model.Chessboard;
 import it.matlice.matlichess.model.Piece;
-import it.matlice.matlichess.model.pieces.Bishop;
-import it.matlice.matlichess.model.pieces.Knight;
-import it.matlice.matlichess.model.pieces.Queen;
-import it.matlice.matlichess.model.pieces.Rook;
+import it.matlice.matlichess.model.PositionSnapshot;
 import it.matlice.matlichess.view.PieceType;
 import it.matlice.matlichess.view.PieceView;
 import it.matlice.settings.Settings;
@@ -28,15 +27,17 @@ public class Game {
     // singleton
     private static Game instance = null;
     private final Map<PieceColor, Map<String, PieceType>> pieceConversionMap = getPieceConversionMap();
-    private final Map<String, String> pieceNameToShortNameMap = getPieceNameToShortNameMap();
     // list of player interfaces; 0 is white, 1 is black, any others are watchers
     List<PlayerInterface> players;
-    // chessboard model instance
+    // chessboard model instance, only the game thread can use it
     private Chessboard chessboard;
+    // the last position published by the game thread, the other threads read it without locks
+    private volatile PositionSnapshot snapshot;
     private PieceColor turn = PieceColor.WHITE; //0 white, 1 black
 
     private Game(List<PlayerInterface> players, List<PlayerInterface> nonPlayers) {
         chessboard = Chessboard.getDefault();
+        publish();
         assert players.size() == 2;
         this.players = players;
         if (nonPlayers != null) {
@@ -116,10 +117,15 @@ public class Game {
      *
      * @param fen         the fen string representative of the start position.
      * @param swapPlayers if true, the white player and the black player will be swapped.
+     * @throws InvalidFenException if the FEN is not valid, in this case the current position is kept
      */
     public void reinitialize(String fen, boolean swapPlayers) {
-        this.chessboard.setPosition(fen);
+        // the position is read on a new chessboard, so a wrong FEN doesn't touch the one being played
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        this.chessboard = c;
         this.turn = this.chessboard.getTurn();
+        publish();
         if (swapPlayers) {
             PlayerInterface player = this.players.get(0);
             this.players.set(0, this.players.get(1));
@@ -139,7 +145,7 @@ public class Game {
         this.chessboard = Chessboard.getDefault();
         this.turn = PieceColor.WHITE;
         this.players.forEach(e -> {
-            e.setMove(null, null);
+            e.setMove(null);
         });
         reinitialize(Settings.STARTING_POSITION_FEN, swapPlayers);
     }
@@ -167,18 +173,20 @@ public class Game {
      */
     public boolean mainloop() {
 
-        List<Location> move = null;
+        String move = null;
         try {
             System.out.println("Asking move for " + turn.toString().toLowerCase());
             move = players.get(turn.index).waitForUserMove();
-            chessboard.move(move.get(0), move.get(1));
-            System.out.println(turn.name + " played " + move.get(0) + move.get(1));
+            if (move == null) return true;
+            chessboard.move(move);
+            System.out.println(turn.name + " played " + move);
 
-            GameState newState = chessboard.getGameState();
+            publish();
+            GameState newState = snapshot.getGameState();
 
             for (PlayerInterface e : this.players) {
                 e.setPosition(convertChessboardToView(chessboard));
-                e.setMove(move.get(0), move.get(1));
+                e.setMove(move);
                 e.setTurn(chessboard.getTurn());
             }
 
@@ -195,9 +203,9 @@ public class Game {
             }
             turn = chessboard.getTurn();
         } catch (InvalidMoveException e) {
-            System.out.println("Invalid move " + move.get(0) + " " + move.get(1));
+            System.out.println("Invalid move " + move);
         } catch (InvalidTurnException e) {
-            System.out.println("Wrong turn " + move.get(0) + " " + move.get(1));
+            System.out.println("Wrong turn " + move);
         } catch (InterruptedException e) {
             return true;
         } catch (Exception e) {
@@ -206,6 +214,22 @@ public class Game {
         return true;
     }
 
+    /**
+     * Publishes a snapshot of the current position, to be called by the game thread after the chessboard has changed
+     */
+    private void publish() {
+        this.snapshot = new PositionSnapshot(chessboard);
+    }
+
+    /**
+     * Returns the last published position, that can be read by any thread
+     *
+     * @return the snapshot of the position
+     */
+    public PositionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * Utility method to convert a string representing a PieceType to the relative {@link PieceType}
      *
@@ -236,20 +260,6 @@ public class Game {
         return conversionMap;
     }
 
-    private Map<String, String> getPieceNameToShortNameMap() {
-
-        Map<String, String> pieceNameConversionMap = new HashMap<>();
-
-        pieceNameConversionMap.put("Pawn", "P");
-        pieceNameConversionMap.put("Knight", "N");
-        pieceNameConversionMap.put("Bishop", "B");
-        pieceNameConversionMap.put("Rook", "R");
-        pieceNameConversionMap.put("Queen", "Q");
-        pieceNameConversionMap.put("King", "K");
-
-        return pieceNameConversionMap;
-    }
-
     /**
      * Converts a given chessboard into an array of PieceView, which will be utilized by the view
      *
@@ -279,42 +289,17 @@ public class Game {
         return this.pieceConversionMap.get(piece.getColor()).get(piece.getName());
     }
 
-    public Set<Location> getAvailableMoves(Location piece) {
-        return chessboard.getAvailableMoves(piece).keySet();
-    }
-
-    /**
-     * sets the model next promotion chosen by the user before making a move.
-     *
-     * @param promotion String representing the piece to be prometed to
-     * @param player    the player who's choosing.
-     */
-    public void setPromotion(String promotion, PieceColor player) {
-        switch (promotion.toUpperCase()) {
-            case "Q":
-                chessboard.setPromotion(player, Queen.class);
-                break;
-            case "R":
-                chessboard.setPromotion(player, Rook.class);
-                break;
-            case "B":
-                chessboard.setPromotion(player, Bishop.class);
-                break;
-            case "N":
-                chessboard.setPromotion(player, Knight.class);
-                break;
-            default:
-                break;
-        }
-    }
-
     /**
-     * sets the promotion for the current player
+     * Returns the locations a piece of the player who has to move can go to, read from the last published position
      *
-     * @param promotion String representing the piece to be prometed to
+     * @param piece the location of the piece
+     * @return the destinations of the piece
      */
-    public void setPromotion(String promotion) {
-        this.setPromotion(promotion, turn);
+    public Set<Location> getAvailableMoves(Location piece) {
+        Set<Location> destinations = new HashSet<>();
+        for (long targets = snapshot.getDestinations(piece); targets != 0; targets &= targets - 1)
+            destinations.add(Location.of(Bitboard.first(targets)));
+        return destinations;
     }
 
     /**
@@ -323,7 +308,7 @@ public class Game {
      * @see Chessboard#toFEN()
      */
     public String getPositionFen(boolean complete) {
-        return chessboard.toFEN(complete);
+        return snapshot.getFen(complete);
     }
 
     /**
@@ -332,7 +317,7 @@ public class Game {
      * @return the fen
      */
     public String getPositionFen() {
-        return chessboard.toFEN(true);
+        return snapshot.getFen(true);
     }
 
     /**
@@ -340,15 +325,19 @@ public class Game {
      * @see Chessboard#isPromoting(Location, Location)
      */
     public boolean isPromotionRequired(Location from, Location to) {
-        return chessboard.isPromoting(from, to);
+        return snapshot.isPromoting(from, to);
     }
 
     public PieceColor getTurn() {
-        return turn;
+        return snapshot.getTurn();
     }
 
-    public HashMap<String, Integer> getPositions() {
-        return chessboard.getRepeatedPositions();
+    /**
+     * @return the keys of the positions that can still be repeated
+     * @see Chessboard#getPositionHistory()
+     */
+    public long[] getPositions() {
+        return snapshot.getPositionHistory();
     }
 
     /**
@@ -358,14 +347,24 @@ public class Game {
         this.players.forEach(PlayerInterface::interrupt);
     }
 
+    /**
+     * releases the resources of all the players, to be called when the game is over and no rematch will follow.
+     */
+    public void close() {
+        this.players.forEach(PlayerInterface::close);
+    }
+
     /**
      * load the game state from a PositionInit class due to network reset. @see NetworkPlayer
      *
      * @param pos
+     * @throws InvalidFenException if the FEN of the packet is not valid, in this case the current position is kept
      */
     public void loadState(PositionInit pos) {
-        chessboard.setPositions(pos.getMoves(), pos.getMove_times());
         reinitialize(pos.getCurrentFEN(), pos.getColor().equals(PieceColor.WHITE) && players.get(0) instanceof NetworkPlayer || pos.getColor().equals(PieceColor.BLACK) && players.get(1) instanceof NetworkPlayer);
+        // the history must be loaded after the position, which resets it
+        chessboard.setPositionHistory(pos.getPositionHistory());
+        publish();
 
     }
 
@@ -377,26 +376,6 @@ public class Game {
      * @return true if the move is valid
      */
     public boolean isMoveValid(Location src, Location dest) {
-        return chessboard.isMoveValid(src, dest);
-    }
-
-    /**
-     * Returns the type of the next pawn promotion for white and black as string
-     *
-     * @return an array of length 2 with the promotion types as string
-     */
-    public String[] getPromotions() {
-        Class<? extends Piece>[] promTypes = chessboard.getPromotions();
-        return new String[]{promTypes[0].getSimpleName(), promTypes[1].getSimpleName()};
-    }
-
-    /**
-     * sets the promotion piece for all the players, given as an array of two elements.
-     *
-     * @param promotionTypes an array containing the strings for the piece to promote to as {<white promotion>, <black promotion>}
-     */
-    public void setPromotions(String[] promotionTypes) {
-        this.setPromotion(pieceNameToShortNameMap.get(promotionTypes[PieceColor.WHITE.index]), PieceColor.WHITE);
-        this.setPromotion(pieceNameToShortNameMap.get(promotionTypes[PieceColor.BLACK.index]), PieceColor.BLACK);
+        return snapshot.isMoveValid(src, dest);
     }
 }
@@ -0,0 +1,161 @@
+package it.matlice.matlichess.controller;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.engine.MonteCarloTree;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import it.matlice.matlichess.model.PositionSnapshot;
+import it.matlice.matlichess.view.ConfigurationPanel;
+import it.matlice.matlichess.view.PieceView;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+
+/**
+ * Cpu player implementation that runs a Monte Carlo tree search written in Java, on as many threads as configured.
+ * The tree is kept between the moves: every move of the game, told by setMove, moves the root of the tree to the
+ * subtree of that move, so the playouts of the previous searches are not lost
+ */
+public class MonteCarloPlayer implements PlayerInterface {
+    private final int time;
+    // null once the player is closed
+    private volatile MonteCarloTree tree;
+    // the position of the root of the tree, null if it's not known
+    private Chessboard position;
+    private volatile boolean interrupted;
+
+    /**
+     * Creates the player
+     *
+     * @param time    the milliseconds of the search of every move
+     * @param threads the number of threads searching at once
+     * @param nodes   the millions of nodes the tree can hold
+     */
+    public MonteCarloPlayer(int time, int threads, int nodes) {
+        this.time = time;
+        this.tree = new MonteCarloTree(threads, nodes * 1_000_000);
+    }
+
+    public static ConfigurationPanel getConfigurationInterface() {
+        return new ConfigurationPanel() {
+            private JSpinner time;
+            private JSpinner threads;
+            private JSpinner nodes;
+
+            @Override
+            public PlayerInterface getInstance() {
+                return new MonteCarloPlayer((Integer) this.time.getValue(), (Integer) this.threads.getValue(), (Integer) this.nodes.getValue());
+            }
+
+            @Override
+            public void buildPanel() {
+                SpinnerModel timeModel = new SpinnerNumberModel(3000, 100, Integer.MAX_VALUE, 100);
+                SpinnerModel threadsModel = new SpinnerNumberModel(Runtime.getRuntime().availableProcessors(), 1, 256, 1);
+                SpinnerModel nodesModel = new SpinnerNumberModel(2, 1, 64, 1);
+                this.time = new JSpinner(timeModel);
+                this.time.setPreferredSize(new Dimension(70, 24));
+                this.threads = new JSpinner(threadsModel);
+                this.threads.setPreferredSize(new Dimension(70, 24));
+                this.nodes = new JSpinner(nodesModel);
+                this.nodes.setPreferredSize(new Dimension(70, 24));
+                this.add(new Label("Time (ms):"));
+                this.add(time);
+                this.add(new Label("Threads:"));
+                this.add(threads);
+                this.add(new Label("Nodes (millions):"));
+                this.add(nodes);
+            }
+        };
+    }
+
+    public static String getName() {
+        return "CPU (Monte Carlo)";
+    }
+
+    @Override
+    public void setColor(PieceColor color) {
+    }
+
+    @Override
+    public String waitForUserMove() throws InterruptedException {
+        interrupted = false;
+        MonteCarloTree tree = this.tree;
+        if (tree == null) throw new InterruptedException();
+        PositionSnapshot snapshot = Game.getInstance().getSnapshot();
+        if (position == null || position.getPositionKey() != snapshot.getPositionKey()) {
+            position = new Chessboard();
+            position.setPosition(snapshot.getFen(true));
+        }
+        // an interrupt that comes before the search starts is seen through the flag, the call to stop could be forgotten
+        int move = tree.search(snapshot.getFen(true), snapshot.getPositionHistory(), 0, time, () -> interrupted);
+        if (interrupted || move == Move.NONE) throw new InterruptedException();
+        return Move.toString(move);
+    }
+
+    @Override
+    public void setPosition(ArrayList<PieceView> pieces) {
+    }
+
+    @Override
+    public void setMove(String move) {
+        MonteCarloTree tree = this.tree;
+        if (tree == null) return;
+        if (move == null || position == null) {
+            tree.clear();
+            position = null;
+            return;
+        }
+        MoveBuffer legal = position.getLegalMoves();
+        for (int i = 0; i < legal.size(); i++) {
+            if (Move.toString(legal.get(i)).equalsIgnoreCase(move)) {
+                position.makeMove(legal.get(i));
+                tree.advance(legal.get(i), position.getPositionKey());
+                return;
+            }
+        }
+        // a move that doesn't come from the known position, the next search starts from scratch
+        tree.clear();
+        position = null;
+    }
+
+    @Override
+    public void setTurn(PieceColor turn) {
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted = true;
+        MonteCarloTree tree = this.tree;
+        if (tree != null) tree.stop();
+    }
+
+    @Override
+    public void close() {
+        MonteCarloTree tree = this.tree;
+        this.tree = null;
+        position = null;
+        if (tree != null) {
+            tree.stop();
+            tree.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isInteractive() {
+        return false;
+    }
+
+    @Override
+    public boolean setState(GameState state, boolean generic, PlayerInterface opponent) {
+        return opponent.setState(state, generic, true);
+    }
+
+    @Override
+    public boolean setState(GameState state, boolean generic, Boolean other_result) {
+        return other_result;
+    }
+
+}
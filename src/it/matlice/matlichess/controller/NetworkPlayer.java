@@ -248,9 +248,9 @@ public class NetworkPlayer implements PlayerInterface {
      * @throws InterruptedException if the call has been interrupted from another thread.
      */
     @Override
-    public List<Location> waitForUserMove() throws InterruptedException {
+    public String waitForUserMove() throws InterruptedException {
         while (socketIn == null) Thread.sleep(200); // no sockets has connected
-        List<Location> move = null;
+        String move = null;
         do {
             this.semThread = Thread.currentThread();
             sem.acquire();
@@ -276,12 +276,10 @@ public class NetworkPlayer implements PlayerInterface {
                 switch (p.getPacketType()) {
                     case "MOVE":
                         if (((Move) p).getExtendedMove() != null) {
-                            // first set the correct promotion types...
-                            String[] promTypes = ((Move) p).getPromotionTypes();
-                            Game.getInstance().setPromotions(promTypes);
-                            // ... and then do the move
-                            move = Location.fromExtendedMove(((Move) p).getExtendedMove());
-                            if (!Game.getInstance().isMoveValid(move.get(0), move.get(1)))
+                            // the promotion, if any, is part of the extended move
+                            move = ((Move) p).getExtendedMove();
+                            List<Location> locations = Location.fromExtendedMove(move);
+                            if (!Game.getInstance().isMoveValid(locations.get(0), locations.get(1)))
                                 throw new InvalidMoveException();
                         }
                         break;
@@ -309,7 +307,7 @@ public class NetworkPlayer implements PlayerInterface {
             this.semThread = null;
         } while (move == null);
         safeSend(new Nop());
-        this.lastReceivedMove = new Move(move.get(0).toString() + move.get(1).toString());
+        this.lastReceivedMove = new Move(move);
         return move;
     }
 
@@ -337,11 +335,11 @@ public class NetworkPlayer implements PlayerInterface {
     }
 
     @Override
-    public void setMove(Location from, Location to) {
-        if (from == null || to == null)
+    public void setMove(String move) {
+        if (move == null)
             return;
-        if (Game.hasInstance() && this.socketOut != null && (lastReceivedMove == null || !lastReceivedMove.equals(new Move(from, to)))) {
-            safeSend(new Move(from.toString() + to.toString()));
+        if (Game.hasInstance() && this.socketOut != null && (lastReceivedMove == null || !lastReceivedMove.equals(new Move(move)))) {
+            safeSend(new Move(move));
             ComPacket p = (ComPacket) safeRead();
             if (p == null || !p.getPacketType().equals("NOP")) throw new InvalidMoveException();
         }
@@ -35,7 +35,7 @@ public class PhysicalPlayer implements PlayerInterface {
     }
 
     @Override
-    public List<Location> waitForUserMove() throws InterruptedException {
+    public String waitForUserMove() throws InterruptedException {
         return View.getInstance().getChessboardView().waitForUserMove();
     }
 
@@ -50,8 +50,12 @@ public class PhysicalPlayer implements PlayerInterface {
     }
 
     @Override
-    public void setMove(Location from, Location to) {
-        View.getInstance().getChessboardView().setMove(from, to);
+    public void setMove(String move) {
+        if (move == null) View.getInstance().getChessboardView().setMove(null, null);
+        else {
+            List<Location> locations = Location.fromExtendedMove(move);
+            View.getInstance().getChessboardView().setMove(locations.get(0), locations.get(1));
+        }
     }
 
     @Override
@@ -1,21 +1,20 @@
 package it.matlice.matlichess.controller;
 
 import it.matlice.matlichess.GameState;
-import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.view.PieceView;
 
 import java.util.ArrayList;
-import java.util.List;
 
 public interface PlayerInterface {
     /**
      * This call will wait until the chosen move is available to be returned, giving the opportunity of being interrupted from another thread
      *
-     * @return the selected move or null in case of interruption
+     * @return the selected move as extended move, the source and the destination locations followed by the short name
+     * of the piece a pawn is promoted to, if the move is a promotion (like "E2E4" or "E7E8N"), or null in case of interruption
      * @throws InterruptedException in case of interruption
      */
-    List<Location> waitForUserMove() throws InterruptedException;
+    String waitForUserMove() throws InterruptedException;
 
     /**
      * Sets the player color
@@ -34,10 +33,9 @@ public interface PlayerInterface {
     /**
      * Tells the player the opponent has made the given move.
      *
-     * @param from starting location
-     * @param to   finish location
+     * @param move the extended move, see {@link PlayerInterface#waitForUserMove()}, null when a new game starts
      */
-    void setMove(Location from, Location to);
+    void setMove(String move);
 
     /**
      * tells the player the current turn
@@ -59,6 +57,13 @@ public interface PlayerInterface {
      */
     void interrupt();
 
+    /**
+     * Releases the threads and the memory held by the player, called once the game is over.
+     * The player can't be asked for moves anymore
+     */
+    default void close() {
+    }
+
     /**
      * Tells the player which is the current state of the game, fired for every turn.
      * <p>
@@ -1,7 +1,6 @@
 package it.matlice.matlichess.controller;
 
 import it.matlice.matlichess.GameState;
-import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.view.ConfigurationPanel;
 import it.matlice.matlichess.view.PieceView;
@@ -10,7 +9,6 @@ import it.matlice.stockfish.Stockfish;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Cpu JNI Stockfish player implementation.
@@ -63,7 +61,7 @@ public class StockfishPlayer implements PlayerInterface {
     }
 
     @Override
-    public List<Location> waitForUserMove() throws InterruptedException {
+    public String waitForUserMove() throws InterruptedException {
         Stockfish.nSetOption("Use NNUE", String.valueOf(false)); // true or false // use neural network
         Stockfish.nSetOption("Contempt", String.valueOf(-100)); // -100, 100  // lower prefers draw
         Stockfish.nSetOption("Skill Level", String.valueOf(this.skill)); // 0, 20 // skill level, 0 is tough tho
@@ -78,12 +76,9 @@ public class StockfishPlayer implements PlayerInterface {
         t = null;
         if (move[0] == null) throw new InterruptedException();
         Stockfish.nGetScore(true);
-        if (move[0].length() == 5) {
-            String promotion = move[0].substring(4, 5);
-            Game.getInstance().setPromotion(promotion);
-        }
         Thread.sleep(delay);
-        return Location.fromExtendedMove(move[0].substring(0, 4));
+        // the UCI notation already tells the piece a pawn is promoted to, like "e7e8n"
+        return move[0];
     }
 
     @Override
@@ -95,7 +90,7 @@ public class StockfishPlayer implements PlayerInterface {
     }
 
     @Override
-    public void setMove(Location from, Location to) {
+    public void setMove(String move) {
         return;
     }
 
@@ -1,22 +1,20 @@
 package it.matlice.matlichess.controller.net;
 
 import it.matlice.matlichess.Location;
-import it.matlice.matlichess.controller.Game;
 
 import java.util.Objects;
 
 /**
  * This packet is used to share incrementally moves made from the users.
  * after this packet is sent the sender expect a NOP response
+ * The extended move carries the piece a pawn is promoted to, like "E7E8N"
  */
 public class Move implements ComPacket {
 
     private final String extendedMove;
-    private String[] promotionTypes = new String[2];
 
     public Move(String extendedMove) {
         this.extendedMove = extendedMove;
-        this.promotionTypes = Game.getInstance().getPromotions();
     }
 
     public Move(Location from, Location to) {
@@ -32,10 +30,6 @@ public class Move implements ComPacket {
         return extendedMove;
     }
 
-    public String[] getPromotionTypes() {
-        return promotionTypes;
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
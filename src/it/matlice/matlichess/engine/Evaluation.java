@@ -0,0 +1,134 @@
+package it.matlice.matlichess.engine;
+
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.model.Bitboard;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Piece;
+
+/**
+ * Static evaluation of a position, in centipawns from the point of view of the player who has to move.
+ * It counts the material and the placement of every piece with a table for each type, the king has one table for the
+ * middlegame and one for the endgame, mixed by the material left on the chessboard
+ */
+public final class Evaluation {
+
+    private Evaluation() {
+    }
+
+    // the value of every type of piece, in centipawns, the king is never taken
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+    private static final int BISHOP_PAIR = 30;
+    private static final int TEMPO = 10;
+    // the phase of the game: 24 at the start, 0 when only the kings and the pawns are left
+    private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    private static final int MAX_PHASE = 24;
+
+    // the tables are written as the chessboard is seen by the white player, the eighth rank first
+    private static final int[][] PLACEMENT = {
+            { // pawn
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5,
+                    0, 0, 0, 20, 20, 0, 0, 0,
+                    5, -5, -10, 0, 0, -10, -5, 5,
+                    5, 10, 10, -20, -20, 10, 10, 5,
+                    0, 0, 0, 0, 0, 0, 0, 0,
+            },
+            { // knight
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+                    -40, -20, 0, 0, 0, 0, -20, -40,
+                    -30, 0, 10, 15, 15, 10, 0, -30,
+                    -30, 5, 15, 20, 20, 15, 5, -30,
+                    -30, 0, 15, 20, 20, 15, 0, -30,
+                    -30, 5, 10, 15, 15, 10, 5, -30,
+                    -40, -20, 0, 5, 5, 0, -20, -40,
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+            },
+            { // bishop
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 10, 10, 5, 0, -10,
+                    -10, 5, 5, 10, 10, 5, 5, -10,
+                    -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10,
+                    -10, 5, 0, 0, 0, 0, 5, -10,
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+            },
+            { // rook
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    5, 10, 10, 10, 10, 10, 10, 5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    0, 0, 0, 5, 5, 0, 0, 0,
+            },
+            { // queen
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 5, 5, 5, 0, -10,
+                    -5, 0, 5, 5, 5, 5, 0, -5,
+                    0, 0, 5, 5, 5, 5, 0, -5,
+                    -10, 5, 5, 5, 5, 5, 0, -10,
+                    -10, 0, 5, 0, 0, 0, 0, -10,
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+            },
+            { // king in the middlegame
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -20, -30, -30, -40, -40, -30, -30, -20,
+                    -10, -20, -20, -20, -20, -20, -20, -10,
+                    20, 20, 0, 0, 0, 0, 20, 20,
+                    20, 30, 10, 0, 0, 10, 30, 20,
+            },
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+
+    /**
+     * Evaluates a position
+     *
+     * @param c the chessboard
+     * @return the score in centipawns, positive if the player who has to move is better
+     */
+    public static int evaluate(Chessboard c) {
+        int phase = 0;
+        int score = 0;
+        int kingMiddlegame = 0;
+        int kingEndgame = 0;
+        for (PieceColor color : PieceColor.values()) {
+            int sign = color == PieceColor.WHITE ? 1 : -1;
+            // the tables are flipped for the black pieces, which read them from their own side
+            int flip = color == PieceColor.WHITE ? 56 : 0;
+            for (int type = Piece.PAWN; type < Piece.KING; type++) {
+                long pieces = c.getBitboard(color, type);
+                phase += PHASE[type] * Long.bitCount(pieces);
+                for (; pieces != 0; pieces &= pieces - 1)
+                    score += sign * (VALUES[type] + PLACEMENT[type][Bitboard.first(pieces) ^ flip]);
+            }
+            if (Long.bitCount(c.getBitboard(color, Piece.BISHOP)) >= 2) score += sign * BISHOP_PAIR;
+            long king = c.getBitboard(color, Piece.KING);
+            if (king != 0) {
+                int square = Bitboard.first(king) ^ flip;
+                kingMiddlegame += sign * PLACEMENT[Piece.KING][square];
+                kingEndgame += sign * KING_ENDGAME[square];
+            }
+        }
+        phase = Math.min(phase, MAX_PHASE);
+        score += (kingMiddlegame * phase + kingEndgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return (c.getTurn() == PieceColor.WHITE ? score : -score) + TEMPO;
+    }
+
+}
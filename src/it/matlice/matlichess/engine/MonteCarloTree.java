@@ -0,0 +1,462 @@
+package it.matlice.matlichess.engine;
+
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveIterator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Monte Carlo tree search of the best move of a position, run by several threads on the same tree.
+ * Every iteration goes down the tree choosing the children by UCT, expands the reached node once it has been visited
+ * enough, plays a short playout from it and adds its result to the nodes of the path. While a thread is on a path its
+ * nodes count a virtual loss, so the other threads try different paths instead of waiting for the same result.
+ * <p>
+ * The nodes are indexes in primitive arrays allocated once, with the children of a node next to each other, so the
+ * tree never creates an object while it grows and takes no more than its capacity. The threads update the counters
+ * of the nodes with atomic operations, and a node is expanded by the thread that wins a compare and set on its state.
+ * After a move is played the subtree of that move is kept, moved to the beginning of the arrays, as the new tree
+ */
+public class MonteCarloTree {
+
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // the results are thousandths: 1000 is a win of the player who made the move into the node, 500 a draw
+    private static final int WIN = 1000;
+    private static final int DRAW = 500;
+    private static final int VIRTUAL_LOSS = 3;
+    private static final double EXPLORATION = 1.4;
+    // the visits a leaf needs before its children are added
+    private static final int EXPAND_VISITS = 2;
+    // the deepest path in the tree
+    private static final int MAX_DEPTH = 256;
+    // the random moves of a playout, then it goes on with the good captures only
+    private static final int PLAYOUT_MOVES = 4;
+    private static final int MAX_PLAYOUT_MOVES = 16;
+
+    private final int threads;
+    private final ExecutorService helpers;
+
+    private final int capacity;
+    private final int[] moves;
+    private final int[] firstChild;
+    private final short[] childCount;
+    private final int[] states;
+    private final int[] visits;
+    private final long[] values;
+    // the new index of every node while the tree is moved, -1 for the nodes that are dropped
+    private final int[] remap;
+    private final AtomicInteger size = new AtomicInteger();
+    // the source of the random numbers of the playouts, every search thread gets its own split of it
+    private final SplittableRandom random;
+    private long rootKey;
+
+    private volatile boolean stopped;
+    private long deadline;
+    private int playouts;
+    // the stop requested by the caller, polled before every playout
+    private BooleanSupplier stopRequested = () -> false;
+
+    /**
+     * Creates an empty tree, whose playouts are different every time
+     *
+     * @param threads  the number of threads searching at once, the calling one included
+     * @param capacity the maximum number of nodes, every node takes 30 bytes
+     */
+    public MonteCarloTree(int threads, int capacity) {
+        this(threads, capacity, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates an empty tree, whose playouts are always the same for the same seed if it's searched by one thread
+     *
+     * @param threads  the number of threads searching at once, the calling one included
+     * @param capacity the maximum number of nodes, every node takes 30 bytes
+     * @param seed     the seed of the random numbers of the playouts
+     */
+    public MonteCarloTree(int threads, int capacity, long seed) {
+        if (threads < 1) throw new IllegalArgumentException("at least one thread is needed");
+        if (capacity < 1) throw new IllegalArgumentException("at least one node is needed");
+        this.threads = threads;
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "playouts");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        this.capacity = capacity;
+        this.moves = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.childCount = new short[capacity];
+        this.states = new int[capacity];
+        this.visits = new int[capacity];
+        this.values = new long[capacity];
+        this.remap = new int[capacity];
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Searches the best move of a position, on the calling thread and on the helper threads.
+     * If the position is the root of the tree, the tree of the previous searches is used.
+     * The search stops when the root has been visited enough, when the time is over or when stop is called
+     *
+     * @param fen       the position
+     * @param history   the keys of the positions before it that can still be repeated, oldest first, or null
+     * @param playouts  the visits of the root to reach, 0 for no limit
+     * @param millis    the time of the search in milliseconds, 0 for no limit
+     * @return the most visited move, or {@link Move#NONE} if the player who has to move has no legal move
+     * @throws InvalidFenException if the position can't be read
+     */
+    public int search(CharSequence fen, long[] history, int playouts, long millis) {
+        return search(fen, history, playouts, millis, () -> false);
+    }
+
+    /**
+     * Searches the best move of a position, see {@link #search(CharSequence, long[], int, long)}.
+     * The search also stops as soon as the caller asks for it: unlike {@link #stop()}, which is forgotten by a search
+     * that starts later, a request made before the search begins is seen by it
+     *
+     * @param fen           the position
+     * @param history       the keys of the positions before it that can still be repeated, oldest first, or null
+     * @param playouts      the visits of the root to reach, 0 for no limit
+     * @param millis        the time of the search in milliseconds, 0 for no limit
+     * @param stopRequested tells whether the caller wants the search to stop, polled before every playout
+     * @return the most visited move, or {@link Move#NONE} if the player who has to move has no legal move
+     * @throws InvalidFenException if the position can't be read
+     */
+    public int search(CharSequence fen, long[] history, int playouts, long millis, BooleanSupplier stopRequested) {
+        this.stopRequested = stopRequested;
+        stopped = stopRequested.getAsBoolean();
+        deadline = millis > 0 ? System.nanoTime() + millis * 1_000_000L : Long.MAX_VALUE;
+        this.playouts = playouts > 0 ? playouts : Integer.MAX_VALUE;
+
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            Chessboard c = new Chessboard();
+            c.setPosition(fen);
+            if (history != null) c.setPositionHistory(history);
+            workers[i] = new Worker(c, random.split());
+        }
+        Chessboard c = workers[0].chessboard;
+        int first = workers[0].iterator.reset().next();
+        if (first == Move.NONE) return Move.NONE;
+        if (size.get() == 0 || rootKey != c.getPositionKey()) {
+            clear();
+            rootKey = c.getPositionKey();
+            size.set(1);
+        }
+
+        Future<?>[] running = new Future<?>[threads];
+        for (int i = 1; i < threads; i++) running[i] = helpers.submit(workers[i]);
+        workers[0].run();
+        stopped = true;
+        for (int i = 1; i < threads; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        int best = _most_visited(0);
+        return best >= 0 ? moves[best] : first;
+    }
+
+    /**
+     * Stops the running search, which returns the best move found by now. It can be called by any thread
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Plays a move on the root: the subtree of the move becomes the tree, the rest is dropped.
+     * If the move has not been searched the tree is emptied. It must not be called while searching
+     *
+     * @param move the encoded move
+     * @param key  the key of the position after the move
+     */
+    public void advance(int move, long key) {
+        int child = -1;
+        if (size.get() > 0 && states[0] == EXPANDED) {
+            for (int i = firstChild[0]; i < firstChild[0] + childCount[0]; i++)
+                if (moves[i] == move) child = i;
+        }
+        if (child < 0) {
+            clear();
+            return;
+        }
+        _move_subtree(child);
+        rootKey = key;
+    }
+
+    /**
+     * Empties the tree
+     */
+    public void clear() {
+        Arrays.fill(states, 0, size.get(), UNEXPANDED);
+        Arrays.fill(visits, 0, size.get(), 0);
+        Arrays.fill(values, 0, size.get(), 0L);
+        size.set(0);
+        rootKey = 0;
+    }
+
+    /**
+     * Returns the number of nodes of the tree
+     *
+     * @return the nodes, at most the capacity
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the visits of the root, that is the playouts of the tree since the root was reached
+     *
+     * @return the number of visits
+     */
+    public int getRootVisits() {
+        return size.get() > 0 ? visits[0] : 0;
+    }
+
+    /**
+     * Releases the helper threads, the tree can't be searched anymore
+     */
+    public void shutdown() {
+        if (helpers != null) helpers.shutdownNow();
+    }
+
+    /**
+     * Returns the most visited child of a node
+     *
+     * @param node the index of the node
+     * @return the index of the child, -1 if the node is not expanded
+     */
+    private int _most_visited(int node) {
+        if (states[node] != EXPANDED) return -1;
+        int best = -1;
+        for (int i = firstChild[node]; i < firstChild[node] + childCount[node]; i++)
+            if (best < 0 || visits[i] > visits[best]) best = i;
+        return best;
+    }
+
+    /**
+     * Moves the subtree of a node to the beginning of the arrays, the node becomes the root.
+     * The kept nodes are copied in the order of their indexes: every node is after its parent, and the children of a
+     * node are next to each other, so every node moves to an index not greater than its own and the copies never
+     * overwrite a node that has not been copied yet
+     *
+     * @param root the index of the new root
+     */
+    private void _move_subtree(int root) {
+        int end = size.get();
+        Arrays.fill(remap, root, end, -1);
+        int kept = 0;
+        for (int i = root; i < end; i++) {
+            if (i != root && remap[i] < 0) continue;
+            remap[i] = kept++;
+            if (states[i] == EXPANDED)
+                Arrays.fill(remap, firstChild[i], firstChild[i] + childCount[i], 0);
+        }
+        for (int i = root; i < end; i++) {
+            if (i != root && remap[i] < 0) continue;
+            int to = remap[i];
+            moves[to] = moves[i];
+            firstChild[to] = states[i] == EXPANDED ? remap[firstChild[i]] : 0;
+            childCount[to] = childCount[i];
+            states[to] = states[i];
+            visits[to] = visits[i];
+            values[to] = values[i];
+        }
+        Arrays.fill(states, kept, end, UNEXPANDED);
+        Arrays.fill(visits, kept, end, 0);
+        Arrays.fill(values, kept, end, 0L);
+        size.set(kept);
+    }
+
+    /**
+     * A thread of the search, with its own chessboard, move iterator and random numbers
+     */
+    private class Worker implements Runnable {
+        private final Chessboard chessboard;
+        private final MoveIterator iterator;
+        private final int[] path = new int[MAX_DEPTH + 1];
+        private final SplittableRandom random;
+
+        Worker(Chessboard chessboard, SplittableRandom random) {
+            this.chessboard = chessboard;
+            this.random = random;
+            this.iterator = new MoveIterator(chessboard);
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                if ((int) INTS.getOpaque(visits, 0) >= playouts || System.nanoTime() >= deadline
+                        || stopRequested.getAsBoolean()) {
+                    stopped = true;
+                    break;
+                }
+                _iterate();
+            }
+        }
+
+        /**
+         * Runs one iteration: selection, expansion, playout and update of the path
+         */
+        private void _iterate() {
+            Chessboard c = chessboard;
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            int result = -1;
+            while ((int) INTS.getAcquire(states, node) == EXPANDED && depth < MAX_DEPTH) {
+                node = _select(node);
+                INTS.getAndAdd(visits, node, VIRTUAL_LOSS);
+                c.makeMove(moves[node]);
+                path[++depth] = node;
+                if (c.isDrawInSearch()) {
+                    result = DRAW;
+                    break;
+                }
+            }
+
+            if (result < 0) {
+                if ((int) INTS.getOpaque(visits, node) >= EXPAND_VISITS + (depth > 0 ? VIRTUAL_LOSS : 0))
+                    _expand(node);
+                // the playout scores the player to move, the node is scored for the player who moved into it
+                result = WIN - _playout();
+            }
+
+            for (int i = depth; i >= 0; i--) {
+                INTS.getAndAdd(visits, path[i], i > 0 ? 1 - VIRTUAL_LOSS : 1);
+                LONGS.getAndAdd(values, path[i], (long) result);
+                result = WIN - result;
+            }
+            for (int i = 0; i < depth; i++) c.unmakeMove();
+        }
+
+        /**
+         * Chooses the child to visit by UCT, the children never visited first in the order of the move iterator
+         *
+         * @param node the index of an expanded node
+         * @return the index of the child
+         */
+        private int _select(int node) {
+            int first = firstChild[node];
+            int end = first + childCount[node];
+            double logVisits = Math.log(Math.max(1, (int) INTS.getOpaque(visits, node)));
+            int best = first;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = first; i < end; i++) {
+                int n = (int) INTS.getOpaque(visits, i);
+                if (n == 0) return i;
+                double score = (long) LONGS.getOpaque(values, i) / (double) (WIN * n) + EXPLORATION * Math.sqrt(logVisits / n);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds the children of a leaf, if no other thread is adding them and there is room for them.
+         * A leaf without legal moves stays a leaf, its playouts end at once
+         *
+         * @param node the index of the leaf
+         */
+        private void _expand(int node) {
+            if (!INTS.compareAndSet(states, node, UNEXPANDED, EXPANDING)) return;
+            int count = 0;
+            for (int move = iterator.reset().next(); move != Move.NONE; move = iterator.next()) count++;
+            int base = count > 0 ? _allocate(count) : -1;
+            if (base < 0) {
+                INTS.setRelease(states, node, UNEXPANDED);
+                return;
+            }
+            int i = base;
+            for (int move = iterator.reset().next(); move != Move.NONE; move = iterator.next()) moves[i++] = move;
+            firstChild[node] = base;
+            childCount[node] = (short) count;
+            INTS.setRelease(states, node, EXPANDED);
+        }
+
+        /**
+         * Takes room for some nodes at the end of the tree
+         *
+         * @param count the number of nodes
+         * @return the index of the first one, -1 if the tree is full
+         */
+        private int _allocate(int count) {
+            int base;
+            do {
+                base = size.get();
+                if (base + count > capacity) return -1;
+            } while (!size.compareAndSet(base, base + count));
+            return base;
+        }
+
+        /**
+         * Plays some random moves from the current position, the good captures first, then goes on with the good
+         * captures only, and evaluates the reached position. The moves are taken back at the end
+         *
+         * @return the result for the player who has to move in the current position
+         */
+        private int _playout() {
+            Chessboard c = chessboard;
+            int played = 0;
+            int result = -1;
+            while (played < MAX_PLAYOUT_MOVES) {
+                if (played > 0 && c.isDrawInSearch()) {
+                    result = DRAW;
+                    break;
+                }
+                int move = iterator.reset().next();
+                if (move == Move.NONE) {
+                    result = c.getMoveGenerator().isInCheck(c.getTurn()) ? 0 : DRAW;
+                    break;
+                }
+                boolean goodCapture = iterator.isCaptureStage() && (Move.isPromotion(move) || c.staticExchange(move) >= 0);
+                if (!goodCapture) {
+                    if (played >= PLAYOUT_MOVES) break;
+                    // a random legal move, the rest of them are drawn one at a time
+                    int seen = 1;
+                    for (int other = iterator.next(); other != Move.NONE; other = iterator.next())
+                        if (random.nextInt(++seen) == 0) move = other;
+                }
+                c.makeMove(move);
+                played++;
+            }
+            if (result < 0) result = _win_probability(Evaluation.evaluate(c));
+            for (int i = 0; i < played; i++) c.unmakeMove();
+            // the result is for the player to move at the end, who is the opponent after an odd number of moves
+            return played % 2 == 0 ? result : WIN - result;
+        }
+    }
+
+    /**
+     * Converts an evaluation to the expected result, with the logistic curve of the Elo ratings
+     *
+     * @param centipawns the evaluation for the player who has to move
+     * @return the expected result, in thousandths
+     */
+    private static int _win_probability(int centipawns) {
+        return (int) Math.round(WIN / (1 + Math.pow(10, -centipawns / 400.0)));
+    }
+
+}
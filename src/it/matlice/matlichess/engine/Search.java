@@ -0,0 +1,413 @@
+package it.matlice.matlichess.engine;
+
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveIterator;
+import it.matlice.matlichess.model.Piece;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Alpha-beta search of the best move of a position, with iterative deepening and a quiescence search of the captures.
+ * The search runs on several threads at once (Lazy SMP): every thread searches the whole tree on its own copy of the
+ * chessboard, and they help each other only through the shared {@link TranspositionTable}, where every thread finds
+ * the results and the best moves of the positions already searched by the others. The helper threads skip some
+ * depths, so that they are usually a step ahead of the main thread and fill the table with the results it will need
+ */
+public class Search {
+
+    /**
+     * The score of a mate at the root, a mate in n plies scores MATE - n
+     */
+    public static final int MATE = 30000;
+    /**
+     * The deepest ply the search can reach, counting the quiescence search
+     */
+    public static final int MAX_PLY = 128;
+
+    private static final int INFINITE = 32000;
+    // the scores above are mates, their distance is stored from the position and not from the root
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    // the nodes searched between two checks of the clock
+    private static final int CLOCK_NODES = 1023;
+    // the depths skipped by the helper threads: a thread skips the depths where (depth + phase) / size is odd
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final int threads;
+    private final TranspositionTable table;
+    private final ExecutorService helpers;
+    private volatile boolean stopped;
+    private long deadline;
+    // the stop requested by the caller, polled with the clock
+    private BooleanSupplier stopRequested = () -> false;
+
+    private int depth;
+    private int score;
+    private long nodes;
+
+    /**
+     * Creates a search
+     *
+     * @param threads   the number of threads searching at once, the calling one included
+     * @param tableSize the megabytes of the transposition table
+     */
+    public Search(int threads, int tableSize) {
+        if (threads < 1) throw new IllegalArgumentException("at least one thread is needed");
+        this.threads = threads;
+        this.table = new TranspositionTable(tableSize);
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "search helper");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    /**
+     * Searches the best move of a position, on the calling thread and on the helper threads.
+     * The search stops when the maximum depth has been searched, when the time is over or when stop is called
+     *
+     * @param fen      the position
+     * @param history  the keys of the positions before it that can still be repeated, oldest first, or null
+     * @param maxDepth the deepest iteration, at least 1
+     * @param millis   the time of the search in milliseconds, 0 for no limit
+     * @return the best move, or {@link Move#NONE} if the player who has to move has no legal move
+     * @throws InvalidFenException if the position can't be read
+     */
+    public int search(CharSequence fen, long[] history, int maxDepth, long millis) {
+        return search(fen, history, maxDepth, millis, () -> false);
+    }
+
+    /**
+     * Searches the best move of a position, see {@link #search(CharSequence, long[], int, long)}.
+     * The search also stops as soon as the caller asks for it: unlike {@link #stop()}, which is forgotten by a search
+     * that starts later, a request made before the search begins is seen by it
+     *
+     * @param fen           the position
+     * @param history       the keys of the positions before it that can still be repeated, oldest first, or null
+     * @param maxDepth      the deepest iteration, at least 1
+     * @param millis        the time of the search in milliseconds, 0 for no limit
+     * @param stopRequested tells whether the caller wants the search to stop, polled with the clock
+     * @return the best move, or {@link Move#NONE} if the player who has to move has no legal move
+     * @throws InvalidFenException if the position can't be read
+     */
+    public int search(CharSequence fen, long[] history, int maxDepth, long millis, BooleanSupplier stopRequested) {
+        this.stopRequested = stopRequested;
+        stopped = stopRequested.getAsBoolean();
+        deadline = millis > 0 ? System.nanoTime() + millis * 1_000_000L : Long.MAX_VALUE;
+        table.newSearch();
+
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            Chessboard c = new Chessboard();
+            c.setPosition(fen);
+            if (history != null) c.setPositionHistory(history);
+            workers[i] = new Worker(i, c, Math.min(maxDepth, MAX_PLY - 1));
+        }
+        if (workers[0].bestMove == Move.NONE) return Move.NONE;
+
+        Future<?>[] running = new Future<?>[threads];
+        for (int i = 1; i < threads; i++) running[i] = helpers.submit(workers[i]);
+        workers[0].run();
+        // the main thread is done, the helpers stop at once
+        stopped = true;
+        for (int i = 1; i < threads; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // the deepest completed iteration wins, the main thread among equals
+        Worker best = workers[0];
+        nodes = 0;
+        for (Worker worker : workers) {
+            nodes += worker.nodes;
+            if (worker.completedDepth > best.completedDepth) best = worker;
+        }
+        depth = best.completedDepth;
+        score = best.bestScore;
+        return best.bestMove;
+    }
+
+    /**
+     * Stops the running search, which returns the best move found by now. It can be called by any thread
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns the depth of the last search, that is the deepest iteration completed
+     *
+     * @return the depth in plies
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the score of the best move of the last search
+     *
+     * @return the score in centipawns for the player who had to move, see {@link #MATE}
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the nodes visited by all the threads in the last search
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Releases the helper threads, the search can't be used anymore
+     */
+    public void shutdown() {
+        if (helpers != null) helpers.shutdownNow();
+    }
+
+    /**
+     * Checks whether the search has to stop, because the time is over or the caller asked for it
+     *
+     * @return true if the search has to stop
+     */
+    private boolean _must_stop() {
+        return System.nanoTime() >= deadline || stopRequested.getAsBoolean();
+    }
+
+    /**
+     * Converts a score from the root to the position where it is stored
+     *
+     * @param score the score
+     * @param ply   the distance of the position from the root
+     * @return the score for the table
+     */
+    private static int _to_table(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    /**
+     * Converts a score of the table to the distance of the position from the root
+     *
+     * @param score the score from the table
+     * @param ply   the distance of the position from the root
+     * @return the score for the search
+     */
+    private static int _from_table(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+
+    /**
+     * A thread of the search, with its own chessboard and its own move iterators
+     */
+    private class Worker implements Runnable {
+        private final int id;
+        private final Chessboard chessboard;
+        private final MoveIterator[] iterators = new MoveIterator[MAX_PLY + 1];
+        private final int maxDepth;
+
+        private long nodes;
+        private int completedDepth;
+        private int bestMove;
+        private int bestScore;
+
+        Worker(int id, Chessboard chessboard, int maxDepth) {
+            this.id = id;
+            this.chessboard = chessboard;
+            this.maxDepth = maxDepth;
+            for (int i = 0; i <= MAX_PLY; i++) iterators[i] = new MoveIterator(chessboard);
+            // any legal move is better than none if the time is over before the first iteration
+            this.bestMove = iterators[0].reset().next();
+        }
+
+        @Override
+        public void run() {
+            for (int depth = 1; depth <= maxDepth && !stopped; depth++) {
+                if (id > 0) {
+                    int i = (id - 1) % SKIP_SIZE.length;
+                    if (((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) % 2 != 0) continue;
+                }
+                _root(depth);
+                // a mate needs no deeper search
+                if (!stopped && Math.abs(bestScore) >= MATE_BOUND && id == 0) break;
+            }
+        }
+
+        /**
+         * Searches the moves of the root, the result is kept only if the iteration is complete
+         *
+         * @param depth the depth of the iteration
+         */
+        private void _root(int depth) {
+            int alpha = -INFINITE;
+            int best = Move.NONE;
+            MoveIterator moves = iterators[0].reset(bestMove);
+            for (int move = moves.next(); move != Move.NONE; move = moves.next()) {
+                chessboard.makeMove(move);
+                int score = best == Move.NONE
+                        ? -_search(depth - 1, -INFINITE, -alpha, 1)
+                        : -_search(depth - 1, -alpha - 1, -alpha, 1);
+                if (best != Move.NONE && score > alpha && !stopped)
+                    score = -_search(depth - 1, -INFINITE, -alpha, 1);
+                chessboard.unmakeMove();
+                if (stopped) return;
+                if (score > alpha) {
+                    alpha = score;
+                    best = move;
+                }
+            }
+            table.store(chessboard.getPositionKey(), best, alpha, depth, TranspositionTable.EXACT);
+            bestMove = best;
+            bestScore = alpha;
+            completedDepth = depth;
+        }
+
+        /**
+         * Searches a position with a window
+         *
+         * @param depth the remaining depth
+         * @param alpha the score the player who has to move is already sure of
+         * @param beta  the score the opponent is already sure of
+         * @param ply   the distance from the root
+         * @return the score of the position, exact if it's between alpha and beta, otherwise a bound
+         */
+        private int _search(int depth, int alpha, int beta, int ply) {
+            if ((++nodes & CLOCK_NODES) == 0 && _must_stop()) stopped = true;
+            if (stopped) return 0;
+            Chessboard c = chessboard;
+            if (c.isDrawInSearch()) return 0;
+            if (ply >= MAX_PLY) return Evaluation.evaluate(c);
+
+            boolean inCheck = c.getMoveGenerator().isInCheck(c.getTurn());
+            // the checks are searched one ply deeper, they are forcing and often hide a mate
+            if (inCheck) depth++;
+            if (depth <= 0) return _quiescence(alpha, beta, ply);
+
+            boolean pv = beta - alpha > 1;
+            long key = c.getPositionKey();
+            long entry = table.probe(key);
+            int tableMove = Move.NONE;
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                if (!pv && TranspositionTable.depth(entry) >= depth) {
+                    int score = _from_table(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha))
+                        return score;
+                }
+            }
+
+            int originalAlpha = alpha;
+            int best = -INFINITE;
+            int bestMove = Move.NONE;
+            int count = 0;
+            MoveIterator moves = iterators[ply].reset(tableMove);
+            for (int move = moves.next(); move != Move.NONE; move = moves.next()) {
+                boolean quiet = !Move.isCapture(move) && !Move.isEnPassant(move) && !Move.isPromotion(move);
+                // the late quiet moves are searched one ply less, and again at full depth if they look good
+                int reduction = quiet && count >= 3 && depth >= 3 && !inCheck && !c.givesCheck(move) ? 1 : 0;
+                c.makeMove(move);
+                int score;
+                if (count++ == 0) score = -_search(depth - 1, -beta, -alpha, ply + 1);
+                else {
+                    score = -_search(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                    if (score > alpha && (reduction > 0 || score < beta))
+                        score = -_search(depth - 1, -beta, -alpha, ply + 1);
+                }
+                c.unmakeMove();
+                if (stopped) return 0;
+
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+            if (count == 0) return inCheck ? -MATE + ply : 0;
+
+            int bound = best >= beta ? TranspositionTable.LOWER
+                    : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(key, bestMove, _to_table(best, ply), depth, bound);
+            return best;
+        }
+
+        /**
+         * Searches only the captures and the queen promotions, until the position is quiet, so that the evaluation is
+         * never made in the middle of an exchange. The player who has to move can stop capturing and take the static
+         * evaluation, unless they are in check: then all the moves are searched
+         *
+         * @param alpha the score the player who has to move is already sure of
+         * @param beta  the score the opponent is already sure of
+         * @param ply   the distance from the root
+         * @return the score of the position
+         */
+        private int _quiescence(int alpha, int beta, int ply) {
+            if ((++nodes & CLOCK_NODES) == 0 && _must_stop()) stopped = true;
+            if (stopped) return 0;
+            Chessboard c = chessboard;
+            if (ply >= MAX_PLY) return Evaluation.evaluate(c);
+
+            if (c.getMoveGenerator().isInCheck(c.getTurn())) {
+                int best = -INFINITE;
+                MoveIterator moves = iterators[ply].reset();
+                for (int move = moves.next(); move != Move.NONE; move = moves.next()) {
+                    c.makeMove(move);
+                    int score = -_quiescence(-beta, -alpha, ply + 1);
+                    c.unmakeMove();
+                    if (stopped) return 0;
+                    if (score > best) {
+                        best = score;
+                        if (score > alpha) {
+                            alpha = score;
+                            if (alpha >= beta) break;
+                        }
+                    }
+                }
+                return best == -INFINITE ? -MATE + ply : best;
+            }
+
+            int best = Evaluation.evaluate(c);
+            if (best >= beta) return best;
+            if (best > alpha) alpha = best;
+
+            MoveIterator moves = iterators[ply].reset();
+            for (int move = moves.nextCapture(); move != Move.NONE; move = moves.nextCapture()) {
+                if (Move.isPromotion(move) ? Move.promotion(move) != Piece.QUEEN : c.staticExchange(move) < 0)
+                    continue;
+                c.makeMove(move);
+                int score = -_quiescence(-beta, -alpha, ply + 1);
+                c.unmakeMove();
+                if (stopped) return 0;
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+}
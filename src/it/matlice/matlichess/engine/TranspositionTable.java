@@ -0,0 +1,161 @@
+package it.matlice.matlichess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size table of the results of a search, indexed by the key of the position and shared by the search threads
+ * without locks.
+ * Every entry is two longs: the key xor the data, then the data. A thread can read an entry while another one is
+ * writing it, or two threads can write the same entry at once, and the two halves then come from different results:
+ * such an entry doesn't give back the key it is looked for with, so it's just a miss.
+ * The entries are grouped in buckets of two, the first one keeps the deepest result and the second one the latest
+ * <p>
+ * The data packs, from the lowest bit: the move (20 bits), the score (16 bits), the depth (8 bits), the bound (2 bits)
+ * and the number of the search that wrote it (8 bits)
+ */
+public final class TranspositionTable {
+
+    /**
+     * The score is exact
+     */
+    public static final int EXACT = 1;
+    /**
+     * The score is a lower bound, the search failed high
+     */
+    public static final int LOWER = 2;
+    /**
+     * The score is an upper bound, the search failed low
+     */
+    public static final int UPPER = 3;
+
+    private static final int MOVE_MASK = (1 << 20) - 1;
+    private static final int SCORE_SHIFT = 20;
+    private static final int DEPTH_SHIFT = 36;
+    private static final int BOUND_SHIFT = 44;
+    private static final int GENERATION_SHIFT = 46;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * Creates an empty table
+     *
+     * @param megabytes the size of the table, rounded down to a power of two buckets
+     */
+    public TranspositionTable(int megabytes) {
+        int buckets = Integer.highestOneBit((int) Math.max(1, Math.min((megabytes * 1024L * 1024L) / 32, 1 << 26)));
+        this.table = new long[buckets * 4];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Marks the start of a new search, the results of the previous ones are replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Looks for the result of a position
+     *
+     * @param key the key of the position
+     * @return the data of the entry, 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int bucket = ((int) key & bucketMask) * 4;
+        long data = table[bucket + 1];
+        if ((table[bucket] ^ data) == key) return data;
+        data = table[bucket + 3];
+        if ((table[bucket + 2] ^ data) == key) return data;
+        return 0L;
+    }
+
+    /**
+     * Saves the result of a position
+     *
+     * @param key   the key of the position
+     * @param move  the best move found, or {@link it.matlice.matlichess.model.Move#NONE}
+     * @param score the score, relative to the position and not to the root
+     * @param depth the depth searched, between 0 and 255
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = ((int) key & bucketMask) * 4;
+        long deepest = table[bucket + 1];
+        // a move already known for the position is kept if the new result has none
+        long old = probe(key);
+        if (move == 0 && old != 0) move = move(old);
+
+        long data = (move & MOVE_MASK)
+                | ((long) (score + 32768) & 0xFFFF) << SCORE_SHIFT
+                | (long) Math.min(Math.max(depth, 0), 255) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) generation << GENERATION_SHIFT;
+        if ((table[bucket] ^ deepest) == key || depth >= depth(deepest) || generation(deepest) != generation) {
+            table[bucket] = key ^ data;
+            table[bucket + 1] = data;
+        } else {
+            table[bucket + 2] = key ^ data;
+            table[bucket + 3] = data;
+        }
+    }
+
+    /**
+     * Returns the best move of an entry
+     *
+     * @param data the data of the entry
+     * @return the encoded move, or {@link it.matlice.matlichess.model.Move#NONE}
+     */
+    public static int move(long data) {
+        return (int) data & MOVE_MASK;
+    }
+
+    /**
+     * Returns the score of an entry
+     *
+     * @param data the data of the entry
+     * @return the score, relative to the position
+     */
+    public static int score(long data) {
+        return (int) ((data >>> SCORE_SHIFT) & 0xFFFF) - 32768;
+    }
+
+    /**
+     * Returns the depth of an entry
+     *
+     * @param data the data of the entry
+     * @return the depth searched
+     */
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Returns the bound of an entry
+     *
+     * @param data the data of the entry
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 0x3);
+    }
+
+    /**
+     * Returns the number of the search that wrote an entry
+     *
+     * @param data the data of the entry
+     * @return the generation, modulo 256
+     */
+    private static int generation(long data) {
+        return (int) ((data >>> GENERATION_SHIFT) & 0xFF);
+    }
+
+}
@@ -0,0 +1,7 @@
+package it.matlice.matlichess.exceptions;
+
+/**
+ * The binary encoding of a position is corrupted, maybe a piece code is unknown or there are too many pieces
+ */
+public class InvalidEncodingException extends RuntimeException {
+}
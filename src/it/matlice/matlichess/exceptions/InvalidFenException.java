@@ -0,0 +1,24 @@
+package it.matlice.matlichess.exceptions;
+
+/**
+ * The FEN can't be read, the message tells what was expected and the position of the first wrong character
+ */
+public class InvalidFenException extends RuntimeException {
+
+    private final int position;
+
+    public InvalidFenException(String message, int position) {
+        super(message + " at position " + position);
+        this.position = position;
+    }
+
+    /**
+     * Returns where the FEN stopped making sense
+     *
+     * @return the index of the wrong character, the length of the FEN if it ended too early
+     */
+    public int getPosition() {
+        return position;
+    }
+
+}
@@ -0,0 +1,185 @@
+package it.matlice.matlichess.model;
+
+/**
+ * Utility class to work with bitboards, 64 bit masks where every bit represents a square of the chessboard.
+ * The square index is row * 8 + col, so A1 is the bit 0, H1 the bit 7 and H8 the bit 63.
+ * It also contains the precomputed attack tables for the pieces that don't slide, the sliding ones are looked up in
+ * {@link MagicAttacks}
+ */
+public final class Bitboard {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+    // A1 is a dark square
+    public static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+    public static final long LIGHT_SQUARES = ~DARK_SQUARES;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // indexed by the color of the attacking pawn, then by its square
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    // the squares strictly between two squares on the same row, column or diagonal, empty if they are not aligned
+    public static final long[][] BETWEEN = new long[64][64];
+
+    // the eight directions a piece can slide along
+    private static final int[] DIRECTION_COL = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] DIRECTION_ROW = {1, 1, 0, 1, -1, -1, 0, -1};
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int col = col(sq);
+            int row = row(sq);
+            KNIGHT_ATTACKS[sq] = bit(col + 1, row + 2) | bit(col - 1, row + 2) | bit(col + 2, row + 1) | bit(col - 2, row + 1)
+                    | bit(col + 1, row - 2) | bit(col - 1, row - 2) | bit(col + 2, row - 1) | bit(col - 2, row - 1);
+            KING_ATTACKS[sq] = bit(col + 1, row + 1) | bit(col, row + 1) | bit(col - 1, row + 1) | bit(col + 1, row)
+                    | bit(col - 1, row) | bit(col + 1, row - 1) | bit(col, row - 1) | bit(col - 1, row - 1);
+            PAWN_ATTACKS[0][sq] = bit(col - 1, row + 1) | bit(col + 1, row + 1);
+            PAWN_ATTACKS[1][sq] = bit(col - 1, row - 1) | bit(col + 1, row - 1);
+
+            for (int dir = 0; dir < 8; dir++) {
+                long between = 0L;
+                for (int i = 1; i < 8; i++) {
+                    long target = bit(col + DIRECTION_COL[dir] * i, row + DIRECTION_ROW[dir] * i);
+                    if (target == 0) break;
+                    BETWEEN[sq][first(target)] = between;
+                    between |= target;
+                }
+            }
+        }
+    }
+
+    private Bitboard() {
+    }
+
+    /**
+     * Returns the square index of a coordinate
+     *
+     * @param col the column index
+     * @param row the row index
+     * @return the square index, from 0 to 63
+     */
+    public static int square(int col, int row) {
+        return (row << 3) | col;
+    }
+
+    /**
+     * Returns the column of a square index
+     *
+     * @param square the square index
+     * @return the column index
+     */
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Returns the row of a square index
+     *
+     * @param square the square index
+     * @return the row index
+     */
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Returns the mask with only the bit of a square set
+     *
+     * @param square the square index
+     * @return the bitboard of the square
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Returns the mask with only the bit of a coordinate set, or an empty mask if the coordinate is outside the chessboard
+     *
+     * @param col the column index
+     * @param row the row index
+     * @return the bitboard of the coordinate
+     */
+    public static long bit(int col, int row) {
+        if (col < 0 || col > 7 || row < 0 || row > 7) return 0L;
+        return 1L << square(col, row);
+    }
+
+    /**
+     * Returns the lowest square set in the bitboard
+     *
+     * @param bitboard a non empty bitboard
+     * @return the square index
+     */
+    public static int first(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Returns the squares reachable across the row, up to and including the first occupied square on both sides
+     *
+     * @param square    the square of the slider
+     * @param occupancy the occupied squares
+     * @return the bitboard of the reachable squares
+     */
+    public static long rowAttacks(int square, long occupancy) {
+        return MagicAttacks.rookAttacks(square, occupancy) & (RANK_1 << (row(square) << 3));
+    }
+
+    /**
+     * Returns the squares reachable across the column, up to and including the first occupied square on both sides
+     *
+     * @param square    the square of the slider
+     * @param occupancy the occupied squares
+     * @return the bitboard of the reachable squares
+     */
+    public static long columnAttacks(int square, long occupancy) {
+        return MagicAttacks.rookAttacks(square, occupancy) & (FILE_A << col(square));
+    }
+
+    /**
+     * Returns the squares reachable across the diagonals, up to and including the first occupied square in every direction
+     *
+     * @param square    the square of the slider
+     * @param occupancy the occupied squares
+     * @return the bitboard of the reachable squares
+     */
+    public static long diagonalAttacks(int square, long occupancy) {
+        return MagicAttacks.bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * Returns the squares attacked by a rook
+     *
+     * @param square    the square of the rook
+     * @param occupancy the occupied squares
+     * @return the bitboard of the attacked squares
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        return MagicAttacks.rookAttacks(square, occupancy);
+    }
+
+    /**
+     * Returns the squares attacked by a bishop
+     *
+     * @param square    the square of the bishop
+     * @param occupancy the occupied squares
+     * @return the bitboard of the attacked squares
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        return MagicAttacks.bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * Returns the squares attacked by a queen
+     *
+     * @param square    the square of the queen
+     * @param occupancy the occupied squares
+     * @return the bitboard of the attacked squares
+     */
+    public static long queenAttacks(int square, long occupancy) {
+        return MagicAttacks.rookAttacks(square, occupancy) | MagicAttacks.bishopAttacks(square, occupancy);
+    }
+
+}
@@ -4,19 +4,17 @@ import it.matlice.matlichess.GameState;
 import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.exceptions.ChessboardLocationException;
+import it.matlice.matlichess.exceptions.InvalidEncodingException;
+import it.matlice.matlichess.exceptions.InvalidFenException;
 import it.matlice.matlichess.exceptions.InvalidMoveException;
 import it.matlice.matlichess.exceptions.InvalidTurnException;
-import it.matlice.matlichess.model.pieces.King;
-import it.matlice.matlichess.model.pieces.Pawn;
-import it.matlice.matlichess.model.pieces.Queen;
+import it.matlice.matlichess.model.pieces.*;
 import it.matlice.settings.Settings;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiConsumer;
-import java.util.function.Supplier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * The game field. It contains information about the location of the pieces on it.
@@ -25,20 +23,181 @@ import java.util.function.Supplier;
  */
 public class Chessboard {
 
-    private final Piece[][] chessboard = new Piece[8][8];
-    private final Class<? extends Piece>[] promotions = new Class[]{Queen.class, Queen.class};
-    private Map<String, Map<Piece, Location>> pieces = new HashMap<>();
-    private King[] kings = new King[2];
+    // castling rights bits, the same mask used by the position hash (see Zobrist#CASTLING)
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING_RIGHTS = 15;
+
+    // the bytes written by encode for every position
+    public static final int ENCODED_SIZE = 32;
+
+    // the material key nibbles of the pawns, the rooks and the queens of both players, any of them can still mate
+    private static final long MATING_MATERIAL = materialKey(PieceColor.WHITE, Piece.PAWN, 15) | materialKey(PieceColor.WHITE, Piece.ROOK, 15)
+            | materialKey(PieceColor.WHITE, Piece.QUEEN, 15) | materialKey(PieceColor.BLACK, Piece.PAWN, 15)
+            | materialKey(PieceColor.BLACK, Piece.ROOK, 15) | materialKey(PieceColor.BLACK, Piece.QUEEN, 15);
+
+    // the FEN letter of every kind of piece, see Piece#getIndex
+    private static final byte[] FEN_PIECES = "PNBRQKpnbrqk".getBytes(StandardCharsets.ISO_8859_1);
+
+    // the half moves without captures or pawn advances after which the game is drawn, fifty moves of each player
+    private static final int HALF_MOVE_DRAW = 100;
+
+    // the value a king is given in the static exchange, more than all the other pieces together
+    private static final int KING_EXCHANGE_VALUE = 1000;
+
+    // for every square, the castling rights kept when a piece leaves it or is taken on it:
+    // moving a king or a rook from its starting square, or taking a rook there, drops the rights it granted
+    private static final int[] CASTLING_RIGHTS_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_KEPT, ALL_CASTLING_RIGHTS);
+        CASTLING_RIGHTS_KEPT[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[7] &= ~WHITE_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[63] &= ~BLACK_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[56] &= ~BLACK_QUEEN_SIDE;
+    }
+
+    private final Piece[][] chessboard;
+    // one occupancy mask for every kind of piece (see Piece#getIndex), one for every color and one for the whole board
+    private final long[] bitboards;
+    private final long[] colorBitboards;
+    private long occupancy = 0L;
+    private final MoveGenerator moveGenerator = new MoveGenerator(this);
+    // buffer reused by the methods that need the legal moves only temporarily
+    private final MoveBuffer moveBuffer = new MoveBuffer();
+    // the legal moves of the player who has to move, generated at most once per position and shared by all the queries
+    private final MoveBuffer legalMoves = new MoveBuffer();
+    private final MoveBuffer legalMovesView = legalMoves.readOnlyView();
+    private boolean legalMovesValid = false;
+    // the gains of the static exchange at every capture of the sequence, see staticExchange
+    private final int[] exchangeGains = new int[32];
+    // the FEN of the position and its fragments: the placement of every rank is written again only when a piece
+    // enters or leaves it, the strings are kept until the key of the position or the clocks change
+    private final byte[][] fenRanks = new byte[8][8];
+    private final int[] fenRankLengths = new int[8];
+    private int fenDirtyRanks = 0xFF;
+    private final byte[] fenBuffer = new byte[128];
+    private String fen;
+    private String shortFen;
+    private long fenKey;
+    private int fenHalfMoveClock;
+    private int fenFullMoveNumber;
+    // the piece a pawn of every player is promoted to when the move doesn't tell it, see setPromotion
+    private final int[] promotionTypes;
+    // for every kind of piece (see Piece#getIndex) the squares it occupies, in no particular order
+    private final int[][] pieceSquares;
+    private final int[] pieceCounts;
+    // the piece counts packed in 4 bits for every kind of piece, see getMaterialKey
+    private long materialKey = 0L;
+    // the position of every occupied square inside its piece list
+    private final int[] pieceListIndex;
+    private final King[] kings;
     private PieceColor turn = PieceColor.WHITE;
-    private Location enPassantTargetSquare = null;
-    //This map is needed to implement a quick algorithm for three repetition rule
-    private HashMap<String, Integer> repeatedPositions = new HashMap<>();
+    // the square skipped by a pawn that has just moved by two squares, -1 if there's none
+    private int enPassantSquare = -1;
+    // the castling rights not lost yet, only the ones whose king and rook are on their starting squares
+    private int castlingRights = 0;
+    // the castling rights given to the chessboard, kept by castlingRights while it is built piece by piece;
+    // a chessboard built piece by piece starts with all of them, a position read from a FEN with the ones it lists
+    private int grantedCastlingRights = ALL_CASTLING_RIGHTS;
+    // Zobrist hash of the pieces, the turn and the en passant square, castling rights are added by getPositionKey
+    private long positionKey = 0L;
+    // the keys of the positions reached in the game, the last one is the current position, used for the three repetition rule
+    private long[] positionHistory;
+    private int positionHistorySize = 0;
     // this is the number of halfMoves since the last capture or pawn advance.
     // The reason for this field is that the value is used in the fifty-move rule.
     private int halfMoveClock = 0;
     // the number of the full move. It starts at 1, and is incremented after Black's move.
     // It is used in the creation of the FEN Notation
     private int fullMoveNumber = 1;
+    // the moves made on the chessboard, so that they can be taken back; the records are reused between moves
+    private UndoRecord[] undoStack;
+    private int undoSize = 0;
+
+    /**
+     * Creates an empty chessboard, white to move
+     */
+    public Chessboard() {
+        this.chessboard = new Piece[8][8];
+        this.bitboards = new long[12];
+        this.colorBitboards = new long[2];
+        this.promotionTypes = new int[]{Piece.QUEEN, Piece.QUEEN};
+        this.pieceSquares = new int[12][10];
+        this.pieceCounts = new int[12];
+        this.pieceListIndex = new int[64];
+        this.kings = new King[2];
+        this.positionHistory = new long[256];
+        this.undoStack = new UndoRecord[256];
+    }
+
+    /**
+     * Creates a copy of a chessboard, see {@link #clone()}. Every array of the position is allocated once, as a copy
+     * of the one of the source
+     *
+     * @param source the chessboard to copy
+     */
+    private Chessboard(Chessboard source) {
+        this.chessboard = new Piece[8][];
+        for (int col = 0; col < 8; col++) this.chessboard[col] = source.chessboard[col].clone();
+        this.bitboards = source.bitboards.clone();
+        this.colorBitboards = source.colorBitboards.clone();
+        this.occupancy = source.occupancy;
+        this.promotionTypes = source.promotionTypes.clone();
+        this.pieceSquares = new int[12][];
+        for (int i = 0; i < 12; i++) this.pieceSquares[i] = source.pieceSquares[i].clone();
+        this.pieceCounts = source.pieceCounts.clone();
+        this.materialKey = source.materialKey;
+        this.pieceListIndex = source.pieceListIndex.clone();
+        this.kings = source.kings.clone();
+
+        this.turn = source.turn;
+        this.enPassantSquare = source.enPassantSquare;
+        this.castlingRights = source.castlingRights;
+        this.grantedCastlingRights = source.grantedCastlingRights;
+        this.positionKey = source.positionKey;
+        this.halfMoveClock = source.halfMoveClock;
+        this.fullMoveNumber = source.fullMoveNumber;
+
+        this.positionHistory = source.positionHistory.clone();
+        this.positionHistorySize = source.positionHistorySize;
+        this.undoStack = new UndoRecord[source.undoStack.length];
+        for (int i = 0; i < source.undoSize; i++) this.undoStack[i] = source.undoStack[i].copy();
+        this.undoSize = source.undoSize;
+    }
+
+    /**
+     * The information needed to take back a move, saved by makeMove and restored by unmakeMove
+     */
+    private static class UndoRecord {
+        int move;
+        Piece moved;
+        int castlingRights;
+        long positionKey;
+        Piece captured;
+        int capturedSquare;
+        int enPassantSquare;
+        int halfMoveClock;
+        int fullMoveNumber;
+
+        UndoRecord copy() {
+            UndoRecord record = new UndoRecord();
+            record.move = move;
+            record.moved = moved;
+            record.castlingRights = castlingRights;
+            record.positionKey = positionKey;
+            record.captured = captured;
+            record.capturedSquare = capturedSquare;
+            record.enPassantSquare = enPassantSquare;
+            record.halfMoveClock = halfMoveClock;
+            record.fullMoveNumber = fullMoveNumber;
+            return record;
+        }
+    }
 
     /**
      * Returns a traditional start game chessboard
@@ -52,13 +211,128 @@ public class Chessboard {
     }
 
     /**
-     * Returns the hashmap that represents how many times a position has been played in the current game
-     * Used to spot repetitions (for endgame)
+     * Returns the Zobrist hash of the current position, which includes the pieces, the turn, the castling rights and
+     * the en passant square. Two positions with the same FEN (without the clocks) have the same key
+     *
+     * @return the 64 bit key of the position
+     * @see Zobrist
+     */
+    public long getPositionKey() {
+        return positionKey ^ Zobrist.CASTLING[getCastlingRights()];
+    }
+
+    /**
+     * Returns the castling rights of both players, as a mask of WHITE_KING_SIDE, WHITE_QUEEN_SIDE, BLACK_KING_SIDE
+     * and BLACK_QUEEN_SIDE. A right is reported only if the king and the rook are still on their starting squares
+     *
+     * @return the castling rights mask
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Setter for the castling rights, used for initialisation of a new position.
+     * The rights whose king or rook is not on its starting square are dropped
+     *
+     * @param rights the castling rights mask, see getCastlingRights
+     */
+    public void setCastlingRights(int rights) {
+        this.grantedCastlingRights = rights & ALL_CASTLING_RIGHTS;
+        _mask_castling_rights();
+    }
+
+    /**
+     * Keeps the granted castling rights whose king and rook are on their starting squares, called when the chessboard
+     * is built piece by piece, so that the order the pieces are put in doesn't matter. The moves keep the rights on
+     * their own
+     */
+    private void _mask_castling_rights() {
+        int rights = grantedCastlingRights;
+        if ((bitboards[Piece.KING] & Bitboard.bit(4)) == 0) rights &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        if ((bitboards[Piece.ROOK] & Bitboard.bit(7)) == 0) rights &= ~WHITE_KING_SIDE;
+        if ((bitboards[Piece.ROOK] & Bitboard.bit(0)) == 0) rights &= ~WHITE_QUEEN_SIDE;
+        if ((bitboards[6 + Piece.KING] & Bitboard.bit(60)) == 0) rights &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        if ((bitboards[6 + Piece.ROOK] & Bitboard.bit(63)) == 0) rights &= ~BLACK_KING_SIDE;
+        if ((bitboards[6 + Piece.ROOK] & Bitboard.bit(56)) == 0) rights &= ~BLACK_QUEEN_SIDE;
+        castlingRights = rights;
+        legalMovesValid = false;
+    }
+
+    /**
+     * Returns the keys of the positions reached since the last capture or pawn advance, the last one is the current position.
+     * Older positions cannot be repeated anymore, so they are not needed for the three repetition rule
+     *
+     * @return the keys of the positions, oldest first
+     */
+    public long[] getPositionHistory() {
+        int from = Math.max(0, positionHistorySize - 1 - halfMoveClock);
+        return Arrays.copyOfRange(positionHistory, from, positionHistorySize);
+    }
+
+    /**
+     * Setter for the position history, used for draw by repetition after a position has been loaded.
+     * The given keys replace the history, the current position is appended if it is not the last one
      *
-     * @return
+     * @param keys the keys of the positions, oldest first
      */
-    public HashMap<String, Integer> getRepeatedPositions() {
-        return repeatedPositions;
+    public void setPositionHistory(long[] keys) {
+        positionHistorySize = 0;
+        for (long key : keys) _push_position_key(key);
+        if (positionHistorySize == 0 || positionHistory[positionHistorySize - 1] != getPositionKey())
+            _push_position_key(getPositionKey());
+    }
+
+    /**
+     * Appends a key to the position history
+     *
+     * @param key the key of the reached position
+     */
+    private void _push_position_key(long key) {
+        if (positionHistorySize == positionHistory.length)
+            positionHistory = Arrays.copyOf(positionHistory, positionHistorySize * 2);
+        positionHistory[positionHistorySize++] = key;
+    }
+
+    /**
+     * Checks whether the current position has been reached three times.
+     * Only the positions since the last capture or pawn advance, with the same player to move, are compared
+     *
+     * @return true if the position is repeated three times
+     */
+    private boolean _is_threefold_repetition() {
+        if (positionHistorySize == 0) return false;
+        long key = positionHistory[positionHistorySize - 1];
+        int limit = Math.max(0, positionHistorySize - 1 - halfMoveClock);
+        int repetitions = 1;
+        for (int i = positionHistorySize - 3; i >= limit; i -= 2)
+            if (positionHistory[i] == key && ++repetitions == 3) return true;
+        return false;
+    }
+
+    /**
+     * Checks whether the current position has already been reached since the last capture or pawn advance.
+     * A search can score the second occurrence as a draw, since the player who repeated can repeat again
+     *
+     * @return true if the position is repeated at least once
+     */
+    public boolean isRepetition() {
+        if (positionHistorySize == 0) return false;
+        long key = positionHistory[positionHistorySize - 1];
+        int limit = Math.max(0, positionHistorySize - 1 - halfMoveClock);
+        for (int i = positionHistorySize - 3; i >= limit; i -= 2)
+            if (positionHistory[i] == key) return true;
+        return false;
+    }
+
+    /**
+     * Checks whether a search can score the current position as a draw: the position is repeated (see
+     * {@link #isRepetition()}), the half move clock has reached the limit of {@link #getGameState()} or nobody can mate
+     *
+     * @return true if the position is a draw for the search
+     */
+    public boolean isDrawInSearch() {
+        return halfMoveClock >= HALF_MOVE_DRAW || isRepetition() || isInsufficientMaterial();
     }
 
     /**
@@ -69,9 +343,68 @@ public class Chessboard {
      * @see this.setPiece(Piece, Location)
      */
     public void _set_piece_at(Location loc, Piece p) {
-        chessboard[loc.col()][loc.row()] = p;
-        if (!pieces.containsKey(p.getName())) pieces.put(p.getName(), new HashMap<>());
-        pieces.get(p.getName()).put(p, loc);
+        _set_piece_at(loc.square(), p);
+        _mask_castling_rights();
+    }
+
+    /**
+     * Puts a {@link Piece} on a certain square in the chessboard, WITHOUT checking whether the destination square is empty.
+     * The castling rights are left as they are, as the moves update them on their own
+     *
+     * @param square the square index
+     * @param p      the chess {@link Piece} to put
+     */
+    public void _set_piece_at(int square, Piece p) {
+        int col = Bitboard.col(square);
+        int row = Bitboard.row(square);
+        if (chessboard[col][row] != null) _toggle_bitboards(chessboard[col][row], square);
+        _toggle_bitboards(p, square);
+        chessboard[col][row] = p;
+    }
+
+    /**
+     * Removes the piece on a square, if any, from the matrix, the bitboards and the pieces map
+     *
+     * @param square the square index
+     * @return the removed piece, null if the square was empty
+     */
+    private Piece _remove_piece_at(int square) {
+        Piece p = chessboard[Bitboard.col(square)][Bitboard.row(square)];
+        if (p == null) return null;
+        _toggle_bitboards(p, square);
+        chessboard[Bitboard.col(square)][Bitboard.row(square)] = null;
+        return p;
+    }
+
+    /**
+     * Flips the bit of a square in all the bitboards that describe a piece, used both to add and to remove it.
+     * The piece key of the position hash and the piece list are updated too
+     *
+     * @param p      the {@link Piece} to add or remove
+     * @param square the square index
+     */
+    private void _toggle_bitboards(Piece p, int square) {
+        long bit = Bitboard.bit(square);
+        int index = p.getIndex();
+        if ((bitboards[index] & bit) != 0) {
+            // the last square of the list takes the place of the removed one
+            int last = pieceSquares[index][--pieceCounts[index]];
+            pieceSquares[index][pieceListIndex[square]] = last;
+            pieceListIndex[last] = pieceListIndex[square];
+            materialKey -= 1L << (index * 4);
+        } else {
+            if (pieceCounts[index] == pieceSquares[index].length)
+                pieceSquares[index] = Arrays.copyOf(pieceSquares[index], pieceCounts[index] * 2);
+            pieceListIndex[square] = pieceCounts[index];
+            pieceSquares[index][pieceCounts[index]++] = square;
+            materialKey += 1L << (index * 4);
+        }
+        bitboards[p.getIndex()] ^= bit;
+        colorBitboards[p.getColor().index] ^= bit;
+        occupancy ^= bit;
+        positionKey ^= Zobrist.PIECE_SQUARE[p.getIndex()][square];
+        legalMovesValid = false;
+        fenDirtyRanks |= 1 << Bitboard.row(square);
     }
 
     /**
@@ -93,7 +426,7 @@ public class Chessboard {
      * @param loc   a string that indicates the coordinate of the chess box
      */
     public void setPiece(Piece piece, String loc) {
-        this.setPiece(piece, new Location(loc));
+        this.setPiece(piece, Location.of(loc));
     }
 
     /**
@@ -114,7 +447,7 @@ public class Chessboard {
      * @param loc a string that indicates the coordinate of the chess box
      */
     public void setKing(King k, String loc) {
-        this.setKing(k, new Location(loc));
+        this.setKing(k, Location.of(loc));
     }
 
     /**
@@ -138,6 +471,227 @@ public class Chessboard {
         return chessboard[col][row];
     }
 
+    /**
+     * Returns the piece located on a square
+     *
+     * @param square the square index
+     * @return the {@link Piece} if the square contains one, else null
+     */
+    public Piece getPieceAt(int square) {
+        return chessboard[Bitboard.col(square)][Bitboard.row(square)];
+    }
+
+    /**
+     * Returns the bitboard of a kind of piece
+     *
+     * @param color the color of the pieces
+     * @param type  the type of the pieces, one of the type indexes in {@link Piece}
+     * @return the mask of the squares occupied by that kind of piece
+     */
+    public long getBitboard(PieceColor color, int type) {
+        return bitboards[color.index * 6 + type];
+    }
+
+    /**
+     * Returns the bitboard of all the pieces of a color
+     *
+     * @param color the color of the pieces
+     * @return the mask of the squares occupied by that color
+     */
+    public long getColorBitboard(PieceColor color) {
+        return colorBitboards[color.index];
+    }
+
+    /**
+     * Returns the bitboard of all the pieces on the chessboard
+     *
+     * @return the mask of the occupied squares
+     */
+    public long getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Returns the pieces of a color that attack a square, with the given occupancy used to block the sliding pieces.
+     * The occupancy can differ from the real one, for example to look through a piece that is going to move
+     *
+     * @param square    the square index
+     * @param by        the color of the attacking pieces
+     * @param occupancy the squares considered occupied
+     * @return the bitboard of the attacking pieces
+     */
+    public long attackersTo(int square, PieceColor by, long occupancy) {
+        long rooksAndQueens = getBitboard(by, Piece.ROOK) | getBitboard(by, Piece.QUEEN);
+        long bishopsAndQueens = getBitboard(by, Piece.BISHOP) | getBitboard(by, Piece.QUEEN);
+        return (Bitboard.PAWN_ATTACKS[by.opponent().index][square] & getBitboard(by, Piece.PAWN))
+                | (Bitboard.KNIGHT_ATTACKS[square] & getBitboard(by, Piece.KNIGHT))
+                | (Bitboard.KING_ATTACKS[square] & getBitboard(by, Piece.KING))
+                | (Bitboard.rookAttacks(square, occupancy) & rooksAndQueens)
+                | (Bitboard.bishopAttacks(square, occupancy) & bishopsAndQueens);
+    }
+
+    /**
+     * Returns whether a square is attacked by a player.
+     * The probe starts from the square itself: it looks for a knight, a pawn or a king of the player on the squares
+     * they would attack it from, then for a slider on the first piece met along every row, column and diagonal,
+     * so the opponent moves are never generated
+     *
+     * @param square the square index
+     * @param by     the color of the attacking player
+     * @return true if at least one piece of the player attacks the square
+     */
+    public boolean isSquareAttacked(int square, PieceColor by) {
+        if ((Bitboard.KNIGHT_ATTACKS[square] & getBitboard(by, Piece.KNIGHT)) != 0) return true;
+        if ((Bitboard.PAWN_ATTACKS[by.opponent().index][square] & getBitboard(by, Piece.PAWN)) != 0) return true;
+        if ((Bitboard.KING_ATTACKS[square] & getBitboard(by, Piece.KING)) != 0) return true;
+        long queens = getBitboard(by, Piece.QUEEN);
+        long rooksAndQueens = getBitboard(by, Piece.ROOK) | queens;
+        if (rooksAndQueens != 0 && (Bitboard.rookAttacks(square, occupancy) & rooksAndQueens) != 0) return true;
+        long bishopsAndQueens = getBitboard(by, Piece.BISHOP) | queens;
+        return bishopsAndQueens != 0 && (Bitboard.bishopAttacks(square, occupancy) & bishopsAndQueens) != 0;
+    }
+
+    /**
+     * Returns whether a square is attacked by a player
+     *
+     * @param location the location of the square
+     * @param by       the color of the attacking player
+     * @return true if at least one piece of the player attacks the square
+     */
+    public boolean isSquareAttacked(Location location, PieceColor by) {
+        return isSquareAttacked(Bitboard.square(location.col(), location.row()), by);
+    }
+
+    /**
+     * Computes the static exchange evaluation of a move: the material the player gains, in piece values, if both players
+     * keep taking on the destination square with their least valuable piece for as long as it pays off.
+     * The pieces that join the exchange from behind the ones that took are considered (x-rays), while the pins are not.
+     * A quiet move gives zero, or the value lost if the piece can be taken for free.
+     * The board is not modified
+     *
+     * @param move the encoded move, see {@link Move}
+     * @return the material balance of the exchange for the player who moves, negative if the move loses material
+     */
+    public int staticExchange(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece moving = getPieceAt(from);
+        if (moving == null || Move.isCastling(move)) return 0;
+
+        int[] gain = exchangeGains;
+        long occupied = occupancy ^ Bitboard.bit(from);
+        Piece victim = getPieceAt(to);
+        int onSquare = _exchange_value(moving.getType());
+        if (Move.isEnPassant(move)) {
+            gain[0] = _exchange_value(Piece.PAWN);
+            occupied ^= Bitboard.bit(Bitboard.square(Bitboard.col(to), Bitboard.row(from)));
+        } else
+            gain[0] = victim != null ? _exchange_value(victim.getType()) : 0;
+        if (Move.isPromotion(move)) {
+            onSquare = _exchange_value(Move.promotion(move));
+            gain[0] += onSquare - _exchange_value(Piece.PAWN);
+        }
+
+        int depth = 0;
+        PieceColor side = moving.getColor().opponent();
+        long attackers = (attackersTo(to, PieceColor.WHITE, occupied) | attackersTo(to, PieceColor.BLACK, occupied)) & occupied;
+        while (depth < gain.length - 1) {
+            long own = attackers & getColorBitboard(side);
+            if (own == 0) break;
+            // the least valuable attacker takes
+            int type = Piece.PAWN;
+            long candidates = own & getBitboard(side, type);
+            while (candidates == 0) candidates = own & getBitboard(side, ++type);
+
+            depth++;
+            gain[depth] = onSquare - gain[depth - 1];
+            // neither player can do better than stopping here
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) break;
+            onSquare = _exchange_value(type);
+
+            // removing the attacker reveals the sliders behind it
+            occupied ^= candidates & -candidates;
+            attackers = (attackersTo(to, PieceColor.WHITE, occupied) | attackersTo(to, PieceColor.BLACK, occupied)) & occupied;
+            side = side.opponent();
+        }
+
+        // every player takes only if it doesn't lose with respect to stopping
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    /**
+     * Returns the value of a kind of piece in the static exchange
+     *
+     * @param type the type of the piece, see {@link Piece#getType()}
+     * @return the value of the piece, the king is worth more than anything else
+     */
+    private static int _exchange_value(int type) {
+        return type == Piece.KING ? KING_EXCHANGE_VALUE : Piece.of(PieceColor.WHITE, type).getValue();
+    }
+
+    /**
+     * Returns whether a move gives check to the opponent king, directly or by uncovering a sliding piece.
+     * The attacks are looked up from the opponent king with the occupancy the move leaves behind, so the discoveries
+     * of en passant captures and of the rook that castles are found as well. The board is not modified
+     *
+     * @param move the encoded move, see {@link Move}
+     * @return true if the opponent king is under attack after the move
+     */
+    public boolean givesCheck(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece moving = getPieceAt(from);
+        if (moving == null) return false;
+        PieceColor color = moving.getColor();
+        int king = getKingSquare(color.opponent());
+        if (king < 0) return false;
+
+        long occupied = (occupancy & ~Bitboard.bit(from)) | Bitboard.bit(to);
+        // the squares the moving pieces come from, their attacks are computed again from where they land
+        long left = Bitboard.bit(from);
+        if (Move.isEnPassant(move))
+            occupied &= ~Bitboard.bit(Bitboard.square(Bitboard.col(to), Bitboard.row(from)));
+        if (Move.isCastling(move)) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = (from + to) / 2;
+            occupied = (occupied & ~Bitboard.bit(rookFrom)) | Bitboard.bit(rookTo);
+            left |= Bitboard.bit(rookFrom);
+            if ((Bitboard.rookAttacks(rookTo, occupied) & Bitboard.bit(king)) != 0) return true;
+        }
+
+        // direct check of the piece on the destination
+        long target = Bitboard.bit(king);
+        switch (Move.isPromotion(move) ? Move.promotion(move) : moving.getType()) {
+            case Piece.PAWN:
+                if ((Bitboard.PAWN_ATTACKS[color.index][to] & target) != 0) return true;
+                break;
+            case Piece.KNIGHT:
+                if ((Bitboard.KNIGHT_ATTACKS[to] & target) != 0) return true;
+                break;
+            case Piece.BISHOP:
+                if ((Bitboard.bishopAttacks(to, occupied) & target) != 0) return true;
+                break;
+            case Piece.ROOK:
+                if ((Bitboard.rookAttacks(to, occupied) & target) != 0) return true;
+                break;
+            case Piece.QUEEN:
+                if ((Bitboard.queenAttacks(to, occupied) & target) != 0) return true;
+                break;
+            default:
+                break;
+        }
+
+        // discovered check of a slider that was behind one of the squares left or of the captured pawn
+        long queens = getBitboard(color, Piece.QUEEN);
+        long sliders = (Bitboard.rookAttacks(king, occupied) & (getBitboard(color, Piece.ROOK) | queens))
+                | (Bitboard.bishopAttacks(king, occupied) & (getBitboard(color, Piece.BISHOP) | queens));
+        return (sliders & ~left) != 0;
+    }
+
     /**
      * Return the whole chessboard matrix
      *
@@ -153,35 +707,37 @@ public class Chessboard {
      * @return the enPassant Target Square
      */
     public Location getEnPassantTargetSquare() {
-        return enPassantTargetSquare;
+        return enPassantSquare < 0 ? null : Location.of(enPassantSquare);
     }
 
     /**
-     * Sets the square skipped by the pawn that has moved by two squares
+     * Returns the square skipped by the pawn that has moved by two squares in the last move
      *
-     * @param enPassantTargetSquare square skipped by the pawn that has moved by two squares
+     * @return the square index, -1 if the last move was not a pawn moving by two squares
      */
-    public void setEnPassantTargetSquare(Location enPassantTargetSquare) {
-        this.enPassantTargetSquare = enPassantTargetSquare;
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
     /**
-     * Returns the type of the next pawn promotion for white and black
+     * Sets the square skipped by the pawn that has moved by two squares
      *
-     * @return an array of length 2 with the promotion types
+     * @param enPassantTargetSquare square skipped by the pawn that has moved by two squares
      */
-    public Class<? extends Piece>[] getPromotions() {
-        return promotions;
+    public void setEnPassantTargetSquare(Location enPassantTargetSquare) {
+        setEnPassantSquare(enPassantTargetSquare == null ? -1 : enPassantTargetSquare.square());
     }
 
     /**
-     * Removes a Piece from the chessboard reference map
+     * Sets the square skipped by the pawn that has moved by two squares
      *
-     * @param toRemove the {@link Piece} to remove
+     * @param square the square index, -1 if there's none
      */
-    private void _removePiece(Piece toRemove) {
-        if (toRemove == null) return;
-        pieces.get(toRemove.getName()).remove(toRemove);
+    public void setEnPassantSquare(int square) {
+        if (enPassantSquare >= 0) positionKey ^= Zobrist.EN_PASSANT[Bitboard.col(enPassantSquare)];
+        if (square >= 0) positionKey ^= Zobrist.EN_PASSANT[Bitboard.col(square)];
+        enPassantSquare = square;
+        legalMovesValid = false;
     }
 
     /**
@@ -190,8 +746,8 @@ public class Chessboard {
      * @param location the {@link Location} of the Piece to remove
      */
     public void removePiece(Location location) {
-        _removePiece(getPieceAt(location));
-        chessboard[location.col()][location.row()] = null;
+        _remove_piece_at(location.square());
+        _mask_castling_rights();
     }
 
     /**
@@ -201,6 +757,15 @@ public class Chessboard {
         halfMoveClock = 0;
     }
 
+    /**
+     * Getter for the halfMoveClock
+     *
+     * @return the half moves since the last capture or pawn advance
+     */
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
+
     /**
      * Set the halfMoveClock to a specific number, used for initialisation of a new position
      *
@@ -234,46 +799,106 @@ public class Chessboard {
      * @param t the color of the player's turn
      */
     public void setTurn(PieceColor t) {
+        if (t != turn) positionKey ^= Zobrist.BLACK_TO_MOVE;
         turn = t;
+        legalMovesValid = false;
     }
 
     /**
      * Changes the turn
      */
     protected void changeTurn() {
+        positionKey ^= Zobrist.BLACK_TO_MOVE;
         turn = turn.opponent();
+        legalMovesValid = false;
     }
 
     /**
-     * Takes the piece in a {@link Location} and moves it to a new box
-     * If the final box is occupied, it removes the old piece and replaces it with the new one
+     * Makes a move without checking if it is allowed, saving what is needed to take it back with unmakeMove.
+     * The side effects of the move (the en passant capture, the rook of the castling, the promotion and the en passant
+     * target square) are described by the flags of the move itself
      *
-     * @param src         the source {@link Location}
-     * @param destination the final {@link Location}
+     * @param move the encoded move, see {@link Move}
      * @return the taken {@link Piece} if exists, else null
      */
-    public Piece _make_move(Location src, Location destination, Supplier<Piece> moveAction) {
-        if (!getPieceAt(src).getColor().equals(turn)) throw new InvalidTurnException();
+    public Piece makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece moving = chessboard[Bitboard.col(from)][Bitboard.row(from)];
+        if (moving == null) throw new InvalidMoveException();
+        if (!moving.getColor().equals(turn)) throw new InvalidTurnException();
+
+        if (undoSize == undoStack.length) undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+        if (undoStack[undoSize] == null) undoStack[undoSize] = new UndoRecord();
+        UndoRecord record = undoStack[undoSize++];
+        record.move = move;
+        record.moved = moving;
+        record.castlingRights = castlingRights;
+        record.enPassantSquare = enPassantSquare;
+        record.halfMoveClock = halfMoveClock;
+        record.fullMoveNumber = fullMoveNumber;
+        record.positionKey = positionKey;
 
         halfMoveClock += 1; // increment now, capturing a piece or pushing a pawn will reset it
         if (turn == PieceColor.BLACK) fullMoveNumber += 1; // increments the number of the total moves
         changeTurn();
-        enPassantTargetSquare = null;
-
-        Piece toCapture = getPieceAt(destination); //if there's no piece taken, it will be null
-        if (toCapture != null) removePiece(destination);
-
-        Piece possibleCapture = moveAction.get();
-        if (possibleCapture != null) toCapture = possibleCapture;
-
-        getPieceAt(src).hasBeenMoved(this);
+        setEnPassantSquare(-1);
+
+        // the pawn captured en passant is beside the moving one
+        record.capturedSquare = Move.isEnPassant(move) ? Bitboard.square(Bitboard.col(to), Bitboard.row(from)) : to;
+        Piece captured = _remove_piece_at(record.capturedSquare);
+        record.captured = captured;
+        if (captured != null || moving.getType() == Piece.PAWN) resetHalfMoveClock();
+        castlingRights &= CASTLING_RIGHTS_KEPT[from] & CASTLING_RIGHTS_KEPT[to];
+        grantedCastlingRights = castlingRights;
+
+        _remove_piece_at(from);
+        Piece placed = Move.isPromotion(move) ? Piece.of(moving.getColor(), Move.promotion(move)) : moving;
+        _set_piece_at(to, placed);
+
+        if (Move.isCastling(move)) {
+            // the rook goes to the square crossed by the king
+            int rookFrom = to > from ? from + 3 : from - 4;
+            _set_piece_at((from + to) / 2, _remove_piece_at(rookFrom));
+        } else if (Move.isDoublePush(move)) {
+            setEnPassantSquare((from + to) / 2);
+        }
 
-        if (toCapture != null) resetHalfMoveClock();
+        _push_position_key(getPositionKey());
+        return captured;
+    }
 
-        _set_piece_at(destination, getPieceAt(src));
-        chessboard[src.col()][src.row()] = null;
+    /**
+     * Takes back the last move made with makeMove, restoring the captured piece, the castling rights,
+     * the en passant square and the clocks
+     */
+    public void unmakeMove() {
+        if (undoSize == 0) throw new InvalidMoveException(); // there's nothing to take back
+        UndoRecord record = undoStack[--undoSize];
+        int from = Move.from(record.move);
+        int to = Move.to(record.move);
+
+        // the piece on the destination may differ from the moved one if it has been promoted
+        _remove_piece_at(to);
+        _set_piece_at(from, record.moved);
+
+        if (Move.isCastling(record.move))
+            _set_piece_at(to > from ? from + 3 : from - 4, _remove_piece_at((from + to) / 2));
+        if (record.captured != null) _set_piece_at(record.capturedSquare, record.captured);
+
+        enPassantSquare = record.enPassantSquare;
+        castlingRights = record.castlingRights;
+        grantedCastlingRights = castlingRights;
+        halfMoveClock = record.halfMoveClock;
+        fullMoveNumber = record.fullMoveNumber;
+        turn = turn.opponent();
+        positionKey = record.positionKey;
+        positionHistorySize--;
+        legalMovesValid = false;
 
-        return toCapture;
+        // drop the references, so that the record doesn't keep captured pieces alive
+        record.moved = null;
+        record.captured = null;
     }
 
     /**
@@ -285,12 +910,34 @@ public class Chessboard {
      * @return the captured {@link Piece} if exists, else null
      */
     public Piece move(Location src, Location destination) {
+        return move(src.square(), destination.square());
+    }
+
+    /**
+     * Checks if a piece is allowed to move to a certain square, then moves it
+     *
+     * @param from the source square index
+     * @param to   the destination square index
+     * @return the captured {@link Piece} if exists, else null
+     */
+    public Piece move(int from, int to) {
+        Piece piece = getPieceAt(from);
+        return move(from, to, piece == null ? Piece.QUEEN : getPromotionType(piece.getColor()));
+    }
+
+    /**
+     * Checks if a piece is allowed to move to a certain square, then moves it
+     *
+     * @param from      the source square index
+     * @param to        the destination square index
+     * @param promotion the type of the piece a pawn is promoted to, if the move is a promotion, see {@link Piece}
+     * @return the captured {@link Piece} if exists, else null
+     */
+    public Piece move(int from, int to, int promotion) {
         assert kings[0] != null && kings[1] != null;
-        if (getPieceAt(src) == null) throw new InvalidMoveException();
-        Supplier<Piece> action = getPieceAt(src).getAction(this, destination, src);
-        Piece captured = _make_move(src, destination, action);
-        saveFEN(toFEN(false));
-        return captured;
+        int move = findMove(from, to, promotion);
+        if (move == Move.NONE) throw new InvalidMoveException();
+        return makeMove(move);
     }
 
     /**
@@ -303,45 +950,205 @@ public class Chessboard {
      * @see this.move(Location, Location)
      */
     public Piece move(String src, String destination) {
-        return move(new Location(src), new Location(destination));
+        return move(Location.of(src), Location.of(destination));
+    }
+
+    /**
+     * Checks if a move is allowed, then makes it
+     *
+     * @param extendedMove the source and the destination in the official notation, followed by the short name of the
+     *                     piece a pawn is promoted to, like "E2E4" or "e7e8n"; without it the piece set with setPromotion is used
+     * @return the taken {@link Piece} if exists, else null
+     */
+    public Piece move(String extendedMove) {
+        List<Location> squares = Location.fromExtendedMove(extendedMove);
+        if (extendedMove.length() < 5) return move(squares.get(0), squares.get(1));
+        int promotion = Piece.typeOf(extendedMove.charAt(4));
+        if (promotion < Piece.KNIGHT || promotion > Piece.QUEEN) throw new InvalidMoveException();
+        return move(squares.get(0).square(), squares.get(1).square(), promotion);
+    }
+
+    /**
+     * Returns the legal move generator of this chessboard
+     *
+     * @return the {@link MoveGenerator}
+     */
+    public MoveGenerator getMoveGenerator() {
+        return moveGenerator;
     }
 
     /**
      * Return all the available moves of a piece in a certain Location
      *
      * @param l the location where the piece is
-     * @return all the available moves of the piece
+     * @return all the available moves of the piece, null if the location is empty
      */
-    public MoveList getAvailableMoves(Location l) {
-        if (this.getPieceAt(l) != null) return this.getPieceAt(l).getAvailableMoves(this, l);
-        return null;
+    public MoveBuffer getAvailableMoves(Location l) {
+        if (this.getPieceAt(l) == null) return null;
+        MoveBuffer moves = new MoveBuffer(32);
+        getAvailableMoves(l.square(), moves);
+        return moves;
     }
 
     /**
-     * Returns whether a move is valid, it's done by doing that move and checking if an InvalidMoveException is thrown
+     * Appends to a buffer the available moves of the piece on a square.
+     * The moves of the player who has to move are taken from the legal moves of the position
+     *
+     * @param square the square index of the piece
+     * @param moves  the buffer the moves are written to
+     */
+    public void getAvailableMoves(int square, MoveBuffer moves) {
+        Piece piece = getPieceAt(square);
+        if (piece == null) return;
+        if (piece.getColor() != turn) {
+            piece.getAvailableMoves(this, square, moves);
+            return;
+        }
+        MoveBuffer legal = getLegalMoves();
+        for (int i = 0; i < legal.size(); i++)
+            if (Move.from(legal.get(i)) == square) moves.add(legal.get(i));
+    }
+
+    /**
+     * Appends to a buffer all the legal moves of the player who has to move
+     *
+     * @param moves the buffer the moves are written to
+     */
+    public void getAvailableMoves(MoveBuffer moves) {
+        // the moves are encoded from the legal destinations of every piece, without the patterns of the pieces
+        for (long own = getColorBitboard(turn); own != 0; own &= own - 1)
+            moveGenerator.addLegalMoves(Bitboard.first(own), moves);
+    }
+
+    /**
+     * Returns the legal moves of the player who has to move.
+     * They are generated the first time they are asked for in a position, then the same buffer is returned until
+     * the chessboard changes, so the game state, the view and the move validation share a single generation per move.
+     * The returned buffer is a read-only view of the cache, which is filled again when the moves of a new position are
+     * asked for, and changing it throws UnsupportedOperationException. Copy the moves to keep them after a change
+     *
+     * @return the legal moves of the position
+     */
+    public MoveBuffer getLegalMoves() {
+        if (!legalMovesValid) {
+            legalMoves.clear();
+            getAvailableMoves(legalMoves);
+            legalMovesValid = true;
+        }
+        return legalMovesView;
+    }
+
+    /**
+     * Returns whether the player who has to move has at least a legal move, stopping at the first piece that can move
+     *
+     * @return true if there's a legal move
+     */
+    private boolean _has_legal_move() {
+        if (legalMovesValid) return !legalMoves.isEmpty();
+        // the destinations are enough, no move has to be encoded
+        for (long own = getColorBitboard(turn); own != 0; own &= own - 1)
+            if (moveGenerator.legalDestinations(Bitboard.first(own)) != 0) return true;
+        return false;
+    }
+
+    /**
+     * Creates a staged iterator over the legal moves of the player who has to move, captures and promotions first.
+     * The iterator should be kept and reset for the following positions instead of creating a new one
+     *
+     * @return the move iterator, positioned on the current position
+     */
+    public MoveIterator moveIterator() {
+        return new MoveIterator(this);
+    }
+
+    /**
+     * Looks for the legal move of the piece in a location to another location.
+     * A promotion is encoded with the piece set with setPromotion
+     *
+     * @param from source of the move
+     * @param to   destination of the move
+     * @return the encoded move, or {@link Move#NONE} if the move is not allowed
+     */
+    public int findMove(Location from, Location to) {
+        return findMove(from.square(), to.square());
+    }
+
+    /**
+     * Looks for the legal move of the piece on a square to another square.
+     * A promotion is encoded with the piece set with setPromotion
+     *
+     * @param from the source square index
+     * @param to   the destination square index
+     * @return the encoded move, or {@link Move#NONE} if the move is not allowed
+     */
+    public int findMove(int from, int to) {
+        Piece piece = getPieceAt(from);
+        if (piece == null) return Move.NONE;
+        return findMove(from, to, getPromotionType(piece.getColor()));
+    }
+
+    /**
+     * Looks for the legal move of the piece on a square to another square
+     *
+     * @param from      the source square index
+     * @param to        the destination square index
+     * @param promotion the type of the piece a pawn is promoted to, if the move is a promotion, see {@link Piece}
+     * @return the encoded move, or {@link Move#NONE} if the move is not allowed
+     */
+    public int findMove(int from, int to, int promotion) {
+        Piece piece = getPieceAt(from);
+        if (piece == null) return Move.NONE;
+        if (piece.getColor() == turn) return getLegalMoves().find(from, to, promotion);
+        moveBuffer.clear();
+        piece.getAvailableMoves(this, from, moveBuffer);
+        return moveBuffer.find(from, to, promotion);
+    }
+
+    /**
+     * Returns whether a move is valid, so if the piece to move belongs to the player who has to move
+     * and the destination is among its available moves
      *
      * @param from source of the move
      * @param to   destination of the move
      * @return true if the move is valid
      */
     public boolean isMoveValid(Location from, Location to) {
-        Chessboard c = this.clone();
-        try {
-            c.move(from, to);
-            return true;
-        } catch (InvalidMoveException e) {
-            return false;
-        }
+        Piece toMove = getPieceAt(from);
+        if (toMove == null || !toMove.getColor().equals(turn)) return false;
+        return toMove.isMoveAllowed(this, to, from);
     }
 
     /**
-     * Set the promotion type for the player
+     * Set the promotion type used for the player when a move doesn't tell to which piece the pawn is promoted
      *
      * @param color The color of the piece to promote
      * @param klass The type of the piece setted to promote to
      */
     public void setPromotion(PieceColor color, Class<? extends Piece> klass) {
-        promotions[color.index] = klass;
+        if (klass == Knight.class) setPromotion(color, Piece.KNIGHT);
+        else if (klass == Bishop.class) setPromotion(color, Piece.BISHOP);
+        else if (klass == Rook.class) setPromotion(color, Piece.ROOK);
+        else setPromotion(color, Piece.QUEEN);
+    }
+
+    /**
+     * Set the promotion type used for the player when a move doesn't tell to which piece the pawn is promoted
+     *
+     * @param color the color of the player
+     * @param type  the type of the piece, see {@link Piece}
+     */
+    public void setPromotion(PieceColor color, int type) {
+        promotionTypes[color.index] = type;
+    }
+
+    /**
+     * Returns the type of the piece a pawn of a player is promoted to when the move doesn't tell it, as set with setPromotion
+     *
+     * @param color the color of the player
+     * @return the type of the piece, see {@link Piece}
+     */
+    public int getPromotionType(PieceColor color) {
+        return promotionTypes[color.index];
     }
 
     /**
@@ -352,11 +1159,7 @@ public class Chessboard {
      */
     public void promote(Location location, PieceColor color) {
         removePiece(location); // remove the pawn
-        try {
-            setPiece((Piece) promotions[color.index].getConstructors()[0].newInstance(color), location);
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
+        setPiece(Piece.of(color, getPromotionType(color)), location);
     }
 
     /**
@@ -396,48 +1199,89 @@ public class Chessboard {
     }
 
     /**
-     * Describes a functional interface
+     * Returns a copy of the chessboard, with the keys of the positions reached and the moves that can be taken back,
+     * so that the copy detects the repetitions and can unmake the moves made before it was created.
+     * The pieces are immutable and shared, so only the arrays that describe the position are copied
      *
-     * @param cb {@link BiConsumer}
+     * @return copy of the {@link Chessboard}
      */
-    private void forEachPiece(BiConsumer<Piece, Location> cb) {
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                if (getPieceAt(i, j) != null) cb.accept(getPieceAt(i, j), new Location(i, j));
+    public Chessboard clone() {
+        return new Chessboard(this);
     }
 
     /**
-     * Returns a copy of the chessboard
+     * Returns how many pieces of a kind are on the chessboard
      *
-     * @return copy of the {@link Chessboard}
+     * @param color the color of the pieces
+     * @param type  the type of the pieces, one of the type indexes in {@link Piece}
+     * @return the number of pieces
      */
-    public Chessboard clone() {
-        Chessboard cloned = new Chessboard();
+    public int getPieceCount(PieceColor color, int type) {
+        return pieceCounts[color.index * 6 + type];
+    }
+
+    /**
+     * Returns the material on the chessboard packed in a single key: the count of every kind of piece takes 4 bits,
+     * at the position given by the bitboard index (see {@link Piece#getIndex}).
+     * Two positions with the same pieces, wherever they are, have the same key, so it can be used to recognize
+     * an endgame or to look up tables indexed by material
+     *
+     * @return the material key
+     */
+    public long getMaterialKey() {
+        return materialKey;
+    }
+
+    /**
+     * Builds the part of a material key that describes a kind of piece
+     *
+     * @param color the color of the pieces
+     * @param type  the type of the pieces, one of the type indexes in {@link Piece}
+     * @param count the number of pieces, up to 15
+     * @return the material key with only that kind of piece
+     */
+    public static long materialKey(PieceColor color, int type, int count) {
+        return (long) count << ((color.index * 6 + type) * 4);
+    }
 
-        final King[] kings = new King[]{null, null};
-        cloned.kings = new King[]{this.kings[0], this.kings[1]};
-        this.forEachPiece((Piece p, Location l) -> {
-            Piece c = p.clone();
-            cloned.setPiece(c, l);
-            if (c instanceof King)
-                kings[c.getColor().index] = (King) c;
-        });
-        cloned.kings = kings;
+    /**
+     * Returns whether neither player has enough material left to checkmate:
+     * the kings alone, a king and a single minor piece against a king, or only bishops that all stand on squares
+     * of the same color
+     *
+     * @return true if the position is a dead draw
+     */
+    public boolean isInsufficientMaterial() {
+        if ((materialKey & MATING_MATERIAL) != 0) return false;
+        int knights = pieceCounts[Piece.KNIGHT] + pieceCounts[6 + Piece.KNIGHT];
+        int bishops = pieceCounts[Piece.BISHOP] + pieceCounts[6 + Piece.BISHOP];
+        if (knights + bishops <= 1) return true;
+        if (knights != 0) return false;
+        long allBishops = bitboards[Piece.BISHOP] | bitboards[6 + Piece.BISHOP];
+        return (allBishops & Bitboard.DARK_SQUARES) == 0 || (allBishops & Bitboard.LIGHT_SQUARES) == 0;
+    }
 
-        cloned.enPassantTargetSquare = this.enPassantTargetSquare;
-        cloned.fullMoveNumber = this.fullMoveNumber;
-        cloned.halfMoveClock = this.halfMoveClock;
-        cloned.turn = this.turn;
-        return cloned;
+    /**
+     * Returns the square of a piece in the list of a kind of pieces
+     *
+     * @param color the color of the pieces
+     * @param type  the type of the pieces, one of the type indexes in {@link Piece}
+     * @param i     the position in the list, lower than getPieceCount
+     * @return the square index of the piece
+     */
+    public int getPieceSquare(PieceColor color, int type, int i) {
+        return pieceSquares[color.index * 6 + type][i];
     }
 
     /**
-     * Returns all the pieces on the chessboard
+     * Returns the square of the king of a player
      *
-     * @return a map containing all the {@link Piece}s
+     * @param color the color of the player
+     * @return the square index of the king, -1 if the player has no king on the chessboard
      */
-    public Map<String, Map<Piece, Location>> getPieces() {
-        return pieces;
+    public int getKingSquare(PieceColor color) {
+        int index = color.index * 6 + Piece.KING;
+        return pieceCounts[index] == 0 ? -1 : pieceSquares[index][0];
     }
 
     @Override
@@ -459,58 +1303,105 @@ public class Chessboard {
 
     /**
      * Returns the Forsyth–Edwards Notation (FEN) used for describing a particular board position of a chess game
-     * The purpose of FEN is to provide all the necessary information to restart a game from a particular position
+     * The purpose of FEN is to provide all the necessary information to restart a game from a particular position.
+     * The FEN is kept until the position or the clocks change, and only the ranks touched since the last time are
+     * written again
      *
      * @param complete set true if you want the compete fen, false to cut the move numbers
      * @return the string representation of the FEN
      */
     public String toFEN(boolean complete) {
-        StringBuilder fen = new StringBuilder();
+        if (fenDirtyRanks != 0 || fen == null || fenKey != getPositionKey()
+                || fenHalfMoveClock != halfMoveClock || fenFullMoveNumber != fullMoveNumber)
+            _write_fen();
+        return complete ? fen : shortFen;
+    }
+
+    /**
+     * Writes the FEN of the current position in the buffer, joining the fragments of the ranks, and keeps its strings
+     */
+    private void _write_fen() {
+        byte[] buffer = fenBuffer;
+        int n = 0;
 
         // base position
         for (int r = 7; r >= 0; r--) {
-            int emptyCounter = 0;
-            for (int c = 0; c < 8; c++) {
-                Piece piece = chessboard[c][r];
-                if (piece != null) {
-                    if (emptyCounter != 0) {
-                        fen.append(emptyCounter);
-                        emptyCounter = 0;
-                    }
-                    fen.append(piece.getShortName());
-                } else emptyCounter++;
-            }
-            if (emptyCounter != 0) fen.append(emptyCounter);
-            if (r != 0) fen.append("/");
+            if ((fenDirtyRanks & (1 << r)) != 0) _write_rank(r);
+            System.arraycopy(fenRanks[r], 0, buffer, n, fenRankLengths[r]);
+            n += fenRankLengths[r];
+            if (r != 0) buffer[n++] = '/';
         }
+        fenDirtyRanks = 0;
 
         // turn
-        fen.append(" ");
-        fen.append(turn.equals(PieceColor.WHITE) ? "w" : "b");
+        buffer[n++] = ' ';
+        buffer[n++] = (byte) (turn == PieceColor.WHITE ? 'w' : 'b');
 
         // castling
-        StringBuilder castling = new StringBuilder();
-        if (this.kings[PieceColor.WHITE.index].isKingCastlingAvailable(this)) castling.append("K");
-        if (this.kings[PieceColor.WHITE.index].isQueenCastlingAvailable(this)) castling.append("Q");
-        if (this.kings[PieceColor.BLACK.index].isKingCastlingAvailable(this)) castling.append("k");
-        if (this.kings[PieceColor.BLACK.index].isQueenCastlingAvailable(this)) castling.append("q");
-
-        fen.append(" ");
-        fen.append(castling.toString().isBlank() ? "-" : castling);
+        buffer[n++] = ' ';
+        int rights = getCastlingRights();
+        if (rights == 0) buffer[n++] = '-';
+        if ((rights & WHITE_KING_SIDE) != 0) buffer[n++] = 'K';
+        if ((rights & WHITE_QUEEN_SIDE) != 0) buffer[n++] = 'Q';
+        if ((rights & BLACK_KING_SIDE) != 0) buffer[n++] = 'k';
+        if ((rights & BLACK_QUEEN_SIDE) != 0) buffer[n++] = 'q';
 
         // en passant
-        fen.append(" ");
-        fen.append(enPassantTargetSquare != null ? enPassantTargetSquare.toString().toLowerCase() : "-");
-
-        if (!complete) return fen.toString();
+        buffer[n++] = ' ';
+        if (enPassantSquare >= 0) {
+            buffer[n++] = (byte) ('a' + Bitboard.col(enPassantSquare));
+            buffer[n++] = (byte) ('1' + Bitboard.row(enPassantSquare));
+        } else buffer[n++] = '-';
+        int shortLength = n;
 
         // move number
-        fen.append(" ");
-        fen.append(halfMoveClock);
-        fen.append(" ");
-        fen.append(fullMoveNumber);
+        buffer[n++] = ' ';
+        n = _write_number(halfMoveClock, n);
+        buffer[n++] = ' ';
+        n = _write_number(fullMoveNumber, n);
+
+        fen = new String(buffer, 0, n, StandardCharsets.ISO_8859_1);
+        shortFen = fen.substring(0, shortLength);
+        fenKey = getPositionKey();
+        fenHalfMoveClock = halfMoveClock;
+        fenFullMoveNumber = fullMoveNumber;
+    }
+
+    /**
+     * Writes again the FEN fragment of a rank
+     *
+     * @param r the index of the rank, 0 for the first one
+     */
+    private void _write_rank(int r) {
+        byte[] fragment = fenRanks[r];
+        int n = 0;
+        int emptyCounter = 0;
+        for (int c = 0; c < 8; c++) {
+            Piece piece = chessboard[c][r];
+            if (piece != null) {
+                if (emptyCounter != 0) {
+                    fragment[n++] = (byte) ('0' + emptyCounter);
+                    emptyCounter = 0;
+                }
+                fragment[n++] = FEN_PIECES[piece.getIndex()];
+            } else emptyCounter++;
+        }
+        if (emptyCounter != 0) fragment[n++] = (byte) ('0' + emptyCounter);
+        fenRankLengths[r] = n;
+    }
 
-        return fen.toString();
+    /**
+     * Writes the digits of a clock in the FEN buffer
+     *
+     * @param value  the non negative number
+     * @param offset where the first digit goes
+     * @return the index after the last digit
+     */
+    private int _write_number(int value, int offset) {
+        int end = offset;
+        for (int v = value; v >= 10; v /= 10) end++;
+        for (int i = end; i >= offset; i--, value /= 10) fenBuffer[i] = (byte) ('0' + value % 10);
+        return end + 1;
     }
 
     public String toFEN() {
@@ -518,51 +1409,128 @@ public class Chessboard {
     }
 
     /**
-     * Saves in a variable how many times is reached the same position
+     * Imports a position from a FEN.
+     * If the FEN can't be read the chessboard is left empty
      *
-     * @param fen the relative FEN of the position
+     * @param fen the representation of the FEN, the move clocks can be omitted
+     * @throws InvalidFenException if the FEN is not valid, with the position of the wrong character
      */
-    public void saveFEN(String fen) {
-        if (!repeatedPositions.containsKey(fen)) repeatedPositions.put(fen, 1);
-        else repeatedPositions.put(fen, repeatedPositions.get(fen) + 1);
+    public void setPosition(CharSequence fen) {
+        _clear();
+        try {
+            FenReader.read(this, fen);
+        } catch (InvalidFenException e) {
+            _clear();
+            throw e;
+        }
+        _push_position_key(getPositionKey());
     }
 
     /**
-     * Imports a position from a FEN
+     * Writes the position in {@link #ENCODED_SIZE} bytes, at the current position of the buffer:
+     * the occupancy mask (8 bytes), the piece on every occupied square from a1 to h8 as a 4 bit code (16 bytes, see
+     * {@link Piece#getIndex()}, the unused codes are zero), the player who has to move in the lowest bit of a byte
+     * with the castling rights above it, the en passant square (-1 if there's none), and the two clocks as shorts.
+     * Nothing is allocated, so millions of positions can be written in a single buffer
      *
-     * @param fen the String representation of the FEN
+     * @param buffer the buffer to write to, with at least ENCODED_SIZE bytes remaining
+     * @throws InvalidEncodingException if there are more than 32 pieces or the clocks don't fit in a short
      */
-    public void setPosition(String fen) {
-        repeatedPositions = new HashMap<>();
-        pieces = new HashMap<>();
-        for (int i = 0; i < 8; i++)
-            for (int j = 0; j < 8; j++)
-                this.chessboard[i][j] = null;
-
-        this.kings = new King[]{null, null};
-
-        FenReader f = FenReader.PIECE_POSITION;
-        int c = 0;
-        while (f != FenReader.FINISHED) {
-            try {
-                f = f.action(this, fen.charAt(c++));
-            } catch (Exception e) {
-                break;
+    public void encode(ByteBuffer buffer) {
+        if (Long.bitCount(occupancy) > 32 || halfMoveClock > 0xFFFF || fullMoveNumber > 0xFFFF)
+            throw new InvalidEncodingException();
+        buffer.putLong(occupancy);
+        int codes = 0;
+        int written = 0;
+        for (long squares = occupancy; squares != 0; squares &= squares - 1) {
+            codes = (codes << 4) | getPieceAt(Bitboard.first(squares)).getIndex();
+            // two pieces for every byte, the first one in the high nibble
+            if ((++written & 1) == 0) {
+                buffer.put((byte) codes);
+                codes = 0;
             }
         }
+        if ((written & 1) != 0) buffer.put((byte) (codes << 4));
+        for (int i = (written + 1) / 2; i < 16; i++) buffer.put((byte) 0);
+        buffer.put((byte) (turn.index | getCastlingRights() << 1));
+        buffer.put((byte) enPassantSquare);
+        buffer.putShort((short) halfMoveClock);
+        buffer.putShort((short) fullMoveNumber);
+        buffer.putShort((short) 0);
     }
 
     /**
-     * Setter for the repeatedPositions attribute, used for draw by repetition
-     * Note that the pos_fen[i] position has appeared times[i] times etc...
+     * Reads a position written by {@link #encode(ByteBuffer)}, from the current position of the buffer.
+     * The position history restarts from the read position, like after setPosition.
+     * If the encoding is corrupted the chessboard is left empty, the buffer is moved after the position anyway
      *
-     * @param pos_fen the array of positions
-     * @param times   the number of time the positions has appeared
+     * @param buffer the buffer to read from, with at least ENCODED_SIZE bytes remaining
+     * @throws InvalidEncodingException if the bytes don't describe a position
      */
-    public void setPositions(String[] pos_fen, Integer[] times) {
-        assert times.length == pos_fen.length;
-        for (int i = 0; i < pos_fen.length; i++)
-            this.repeatedPositions.put(pos_fen[i], times[i]);
+    public void decode(ByteBuffer buffer) {
+        _clear();
+        int start = buffer.position();
+        long squares = buffer.getLong();
+        if (Long.bitCount(squares) > 32) throw _corrupted_encoding(buffer, start);
+        int codes = 0;
+        for (int read = 0; squares != 0; squares &= squares - 1, read++) {
+            if ((read & 1) == 0) codes = buffer.get();
+            int index = (read & 1) == 0 ? (codes >> 4) & 0xF : codes & 0xF;
+            if (index >= 12) throw _corrupted_encoding(buffer, start);
+            Piece piece = Piece.of(index < 6 ? PieceColor.WHITE : PieceColor.BLACK, index % 6);
+            _set_piece_at(Bitboard.first(squares), piece);
+            if (piece.getType() == Piece.KING) kings[piece.getColor().index] = (King) piece;
+        }
+        buffer.position(start + 24);
+        int state = buffer.get();
+        setTurn((state & 1) == 0 ? PieceColor.WHITE : PieceColor.BLACK);
+        setCastlingRights(state >> 1);
+        int enPassant = buffer.get();
+        if (enPassant < -1 || enPassant > 63) throw _corrupted_encoding(buffer, start);
+        setEnPassantSquare(enPassant);
+        halfMoveClock = buffer.getShort() & 0xFFFF;
+        fullMoveNumber = buffer.getShort() & 0xFFFF;
+        buffer.getShort();
+        _push_position_key(getPositionKey());
+    }
+
+    /**
+     * Empties the chessboard and moves the buffer after a corrupted position, so that the next one can be read
+     *
+     * @param buffer the buffer being read
+     * @param start  the index of the first byte of the position
+     * @return the exception to throw
+     */
+    private InvalidEncodingException _corrupted_encoding(ByteBuffer buffer, int start) {
+        _clear();
+        buffer.position(start + ENCODED_SIZE);
+        return new InvalidEncodingException();
+    }
+
+    /**
+     * Removes all the pieces and the history, with the white player to move and no castling rights
+     */
+    private void _clear() {
+        Arrays.fill(pieceCounts, 0);
+        materialKey = 0L;
+        undoSize = 0;
+        positionHistorySize = 0;
+        positionKey = 0L;
+        turn = PieceColor.WHITE;
+        enPassantSquare = -1;
+        castlingRights = 0; // only the rights listed by the FEN
+        grantedCastlingRights = 0;
+        halfMoveClock = 0;
+        fullMoveNumber = 1;
+        legalMovesValid = false;
+        for (int i = 0; i < 8; i++)
+            for (int j = 0; j < 8; j++)
+                this.chessboard[i][j] = null;
+        Arrays.fill(bitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        occupancy = 0L;
+        fenDirtyRanks = 0xFF;
+        Arrays.fill(kings, null);
     }
 
     /**
@@ -571,33 +1539,14 @@ public class Chessboard {
      * @return the state of the game
      */
     public GameState getGameState() {
-        if (halfMoveClock == 50) {
-            //System.out.println("DRAW by 50 moves");
-            return GameState.DRAW;
-        }
-        if (repeatedPositions.containsValue(3)) {
-            //System.out.println("DRAW by repetition");
-            return GameState.DRAW;
+        // a mate ends the game even on the move that reaches the half move limit
+        if (!_has_legal_move()) {
+            if (!getKing(turn).isUnderCheck(this)) return GameState.DRAW;
+            return turn.equals(PieceColor.BLACK) ? GameState.WHITE_WIN : GameState.BLACK_WIN;
         }
-        ArrayList<Location> allMoves = new ArrayList<>();
-        for (Map<Piece, Location> family : getPieces().values()) {
-            for (Map.Entry<Piece, Location> entry : family.entrySet()) {
-                if (entry.getKey().getColor().equals(turn))
-                    allMoves.addAll(entry.getKey().getAvailableMoves(this, entry.getValue()).keySet());
-            }
-        }
-        if (allMoves.isEmpty())
-            if (getKing(turn).isUnderCheck(this, getPieces().get("King").get(getKing(turn)))) {
-                if (turn.equals(PieceColor.BLACK)) {
-                    //System.out.println("WIN WHITE by checkmate");
-                    return GameState.WHITE_WIN;
-                }
-                //System.out.println("WIN BLACK by checkmate");
-                return GameState.BLACK_WIN;
-            } else {
-                //System.out.println("DRAW by stalemate");
-                return GameState.DRAW;
-            }
+        if (halfMoveClock >= HALF_MOVE_DRAW) return GameState.DRAW;
+        if (_is_threefold_repetition()) return GameState.DRAW;
+        if (isInsufficientMaterial()) return GameState.DRAW;
         return GameState.PLAYING;
     }
 
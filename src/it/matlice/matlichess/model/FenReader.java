@@ -2,152 +2,220 @@ package it.matlice.matlichess.model;
 
 import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
-import it.matlice.matlichess.model.pieces.*;
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.model.pieces.King;
 
 /**
- * Utility class that reads a FEN
+ * Utility class that reads a FEN.
+ * The whole state of a reading lives in the local variables of the methods, so any number of threads can read FENs at
+ * the same time, each one on its own chessboard, and a FEN that can't be read leaves nothing behind for the next one.
+ * The characters are read straight from the given sequence, without copying it or splitting it in strings
  */
-public enum FenReader {
-    PIECE_POSITION {
-        public FenReader action(Chessboard c, char character) {
-            // if it's reading a piece position, if a letter is given then place the piece;
-            // if a number is given it should skip that number of cells
-            // if a '/' is given it should skip to the next line
-            // if a  ' ' is given it should skip to next reading state
-            switch (character) {
-                case 'r':
-                case 'R':
-                    c.setPiece(new Rook((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
+public final class FenReader {
+
+    private FenReader() {
+    }
+
+    /**
+     * Reads a FEN into a chessboard.
+     * The chessboard must be empty, with no castling rights and with the white player to move.
+     * The move clocks can be missing, like in the EPD records, then they are left unchanged
+     *
+     * @param c   the chessboard to fill
+     * @param fen the FEN
+     * @throws InvalidFenException if a field of the FEN is not valid, the chessboard is then partially filled
+     */
+    public static void read(Chessboard c, CharSequence fen) {
+        int i = _read_pieces(c, fen, 0);
+        i = _read_turn(c, fen, _skip_separator(fen, i));
+        i = _read_castling(c, fen, _skip_separator(fen, i));
+        i = _read_en_passant(c, fen, _skip_separator(fen, i));
+
+        if (_skip_spaces(fen, i) == fen.length()) return;
+        int start = _skip_separator(fen, i);
+        i = _field_end(fen, start);
+        c.setHalfMoveClock(_read_number(fen, start, i));
+        if (_skip_spaces(fen, i) == fen.length()) return;
+        start = _skip_separator(fen, i);
+        i = _field_end(fen, start);
+        c.setFullMoveNumber(_read_number(fen, start, i));
+        if (_skip_spaces(fen, i) != fen.length())
+            throw new InvalidFenException("unexpected characters after the move number", i);
+    }
+
+    /**
+     * Reads the placement of the pieces, from the eighth rank to the first one
+     *
+     * @param c   the chessboard to fill
+     * @param fen the FEN
+     * @param i   the index of the first character of the field
+     * @return the index of the first character after the field
+     */
+    private static int _read_pieces(Chessboard c, CharSequence fen, int i) {
+        int rank = 7;
+        int col = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            char character = fen.charAt(i);
+            if (character == '/') {
+                // a rank must be complete before the next one starts
+                if (col != 8 || rank == 0) throw new InvalidFenException("unexpected '/'", i);
+                rank--;
+                col = 0;
+            } else if (character >= '1' && character <= '8') {
+                col += character - '0';
+                if (col > 8) throw new InvalidFenException("too many squares in the rank", i);
+            } else {
+                int type = Piece.typeOf(character);
+                if (type < 0) throw new InvalidFenException("unknown piece '" + character + "'", i);
+                if (col == 8) throw new InvalidFenException("too many squares in the rank", i);
+                Piece piece = Piece.of(Character.isLowerCase(character) ? PieceColor.BLACK : PieceColor.WHITE, type);
+                if (type == Piece.KING) c.setKing((King) piece, Location.of(col++, rank));
+                else c.setPiece(piece, Location.of(col++, rank));
+            }
+        }
+        if (rank != 0 || col != 8) throw new InvalidFenException("incomplete piece placement", i);
+        return i;
+    }
+
+    /**
+     * Reads the player who has to move, 'w' or 'b'
+     *
+     * @param c   the chessboard to fill
+     * @param fen the FEN
+     * @param i   the index of the first character of the field
+     * @return the index of the first character after the field
+     */
+    private static int _read_turn(Chessboard c, CharSequence fen, int i) {
+        char character = fen.charAt(i);
+        if (character == 'b') c.setTurn(PieceColor.BLACK);
+        else if (character == 'w') c.setTurn(PieceColor.WHITE);
+        else throw new InvalidFenException("expected 'w' or 'b'", i);
+        return _end_of_field(fen, i + 1);
+    }
+
+    /**
+     * Reads the castling rights: K and Q for the white king and queen sides, k and q for the black ones, '-' for none
+     *
+     * @param c   the chessboard to fill
+     * @param fen the FEN
+     * @param i   the index of the first character of the field
+     * @return the index of the first character after the field
+     */
+    private static int _read_castling(Chessboard c, CharSequence fen, int i) {
+        if (fen.charAt(i) == '-') return _end_of_field(fen, i + 1);
+        int rights = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            int right;
+            switch (fen.charAt(i)) {
+                case 'K':
+                    right = Chessboard.WHITE_KING_SIDE;
                     break;
-                case 'q':
                 case 'Q':
-                    c.setPiece(new Queen((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
-                    break;
-                case 'n':
-                case 'N':
-                    c.setPiece(new Knight((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
-                    break;
-                case 'b':
-                case 'B':
-                    c.setPiece(new Bishop((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
-                    break;
-                case 'p':
-                case 'P':
-                    c.setPiece(new Pawn((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
+                    right = Chessboard.WHITE_QUEEN_SIDE;
                     break;
                 case 'k':
-                case 'K':
-                    c.setKing(new King((character & 0x20) != 0 ? PieceColor.BLACK : PieceColor.WHITE), new Location(cur_col++, cur_rank));
-                    break;
-                case '1':
-                case '2':
-                case '3':
-                case '4':
-                case '5':
-                case '6':
-                case '7':
-                case '8':
-                    this.cur_col += Integer.parseInt(String.valueOf(character));
+                    right = Chessboard.BLACK_KING_SIDE;
                     break;
-                case '/':
-                    this.cur_col = 0;
-                    this.cur_rank -= 1;
+                case 'q':
+                    right = Chessboard.BLACK_QUEEN_SIDE;
                     break;
-                case ' ':
-                    cur_rank = 7;
-                    cur_col = 0;
-                    partial = "";
-                    return FenReader.TURN;
+                default:
+                    throw new InvalidFenException("expected a castling right", i);
             }
-            return this;
+            if ((rights & right) != 0) throw new InvalidFenException("repeated castling right", i);
+            rights |= right;
         }
-    },
+        c.setCastlingRights(rights);
+        return i;
+    }
 
-    TURN {
-        public FenReader action(Chessboard c, char character) {
-            // reading a turn, if it's 'w' then it's white turns, same with black
-            // ' ' skips to next state
-            if (character == 'b') c.setTurn(PieceColor.BLACK);
-            else if (character == 'w') c.setTurn(PieceColor.WHITE);
-            else if (character == ' ') return FenReader.CASTLING;
-            return this;
-        }
-    },
-
-    CASTLING {
-        public FenReader action(Chessboard c, char character) {
-            // reading whether castling is available and for which pieces;
-            // q stands for queen's side, k for king's side
-            // upper case is for white king, lower case for black king
-            if (character == ' ') return FenReader.EN_PASSANT;
-            return this;
-        }
-    },
-
-    EN_PASSANT {
-        public FenReader action(Chessboard c, char character) {
-            // reading the actual en passant cell;
-            // if it's not given there should be a '-'
-            if (character == ' ') {
-                if (!this.partial.equals("-"))
-                    c.setEnPassantTargetSquare(new Location(this.partial));
-                this.partial = "";
-                return FenReader.SEMIMOVES;
-            } else {
-                this.partial += character;
-            }
-            return this;
-        }
-    },
+    /**
+     * Reads the en passant target square, or '-' if there's none. The square is behind a pawn of the player who has
+     * just moved: on the sixth rank if white has to move, on the third one if black has to move
+     *
+     * @param c   the chessboard to fill
+     * @param fen the FEN
+     * @param i   the index of the first character of the field
+     * @return the index of the first character after the field
+     */
+    private static int _read_en_passant(Chessboard c, CharSequence fen, int i) {
+        if (fen.charAt(i) == '-') return _end_of_field(fen, i + 1);
+        char col = Character.toLowerCase(fen.charAt(i));
+        if (col < 'a' || col > 'h') throw new InvalidFenException("expected a column between a and h", i);
+        boolean white = c.getTurn() == PieceColor.WHITE;
+        if (i + 1 == fen.length() || fen.charAt(i + 1) != (white ? '6' : '3'))
+            throw new InvalidFenException(white ? "expected the sixth rank" : "expected the third rank", i + 1);
+        c.setEnPassantSquare(Bitboard.square(col - 'a', fen.charAt(i + 1) - '1'));
+        return _end_of_field(fen, i + 2);
+    }
 
-    SEMIMOVES {
-        public FenReader action(Chessboard c, char character) {
-            // reading semimoves clock as an int
-            // ' ' skips to next state
-            if (character == ' ') {
-                c.setHalfMoveClock(Integer.parseInt(partial));
-                this.partial = "";
-                return FenReader.MOVES;
-            } else {
-                this.partial += character;
-            }
-            return this;
+    /**
+     * Reads a non negative number
+     *
+     * @param fen   the FEN
+     * @param start the index of the first digit
+     * @param end   the index after the last digit
+     * @return the number
+     */
+    private static int _read_number(CharSequence fen, int start, int end) {
+        if (end - start > 9) throw new InvalidFenException("number too big", start);
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char character = fen.charAt(i);
+            if (character < '0' || character > '9') throw new InvalidFenException("expected a digit", i);
+            value = value * 10 + (character - '0');
         }
-    },
+        return value;
+    }
 
-    MOVES {
-        public FenReader action(Chessboard c, char character) {
-            // reading fullmoves clock as an int
-            // ' ' skips to next state
-            if (character == ' ') {
-                c.setFullMoveNumber(Integer.parseInt(partial));
-                this.partial = "";
-                return FenReader.FINISHED;
-            } else {
-                this.partial += character;
-            }
-            return this;
-        }
-    },
+    /**
+     * Finds the end of a field
+     *
+     * @param fen the FEN
+     * @param i   the index of the first character of the field
+     * @return the index of the first space after the field, or the length of the FEN
+     */
+    private static int _field_end(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) != ' ') i++;
+        return i;
+    }
 
-    FINISHED {
-        public FenReader action(Chessboard c, char character) {
-            // the reading has finished, do nothing
-            return this;
-        }
-    };
+    /**
+     * Checks that a field ends at the given index
+     *
+     * @param fen the FEN
+     * @param i   the index after the last character of the field
+     * @return the same index
+     */
+    private static int _end_of_field(CharSequence fen, int i) {
+        if (i < fen.length() && fen.charAt(i) != ' ') throw new InvalidFenException("expected a space", i);
+        return i;
+    }
 
-    int cur_rank = 7;
-    int cur_col = 0;
-    String partial = "";
+    /**
+     * Skips the spaces between two fields, there must be at least one and a field after them
+     *
+     * @param fen the FEN
+     * @param i   the index after the last character of the previous field
+     * @return the index of the first character of the next field
+     */
+    private static int _skip_separator(CharSequence fen, int i) {
+        int next = _skip_spaces(fen, i);
+        if (next == fen.length()) throw new InvalidFenException("missing field", next);
+        if (next == i) throw new InvalidFenException("expected a space", i);
+        return next;
+    }
 
     /**
-     * Method that perform an action based on a given character and on the actual status given by the enum
+     * Skips the spaces from an index
      *
-     * @param c         the Chessboard to act on
-     * @param character the char to evaluate
-     * @return the next state of the fen reader
+     * @param fen the FEN
+     * @param i   the first index to check
+     * @return the index of the first character that is not a space, or the length of the FEN
      */
-    public abstract FenReader action(Chessboard c, char character);
+    private static int _skip_spaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') i++;
+        return i;
+    }
 
 }
@@ -0,0 +1,157 @@
+package it.matlice.matlichess.model;
+
+/**
+ * Precomputed attack tables for the sliding pieces, based on magic bitboards.
+ * For every square only the occupancy of the squares a slider could be blocked by (the relevant mask) matters:
+ * multiplying it by a magic number packs those bits into the top of the product, which is then used as the index of
+ * the attacks computed in advance for that occupancy. A rook or bishop attack is so a mask, a multiplication, a shift
+ * and an array access, independently of how far the slider can go.
+ * The magic numbers have been found with a random search, checking that two occupancies sent to the same index always
+ * lead to the same attacks; the tables are filled once when the class is loaded
+ */
+public final class MagicAttacks {
+
+    private static final int[] ROOK_DIRECTION_COL = {0, 1, 0, -1};
+    private static final int[] ROOK_DIRECTION_ROW = {1, 0, -1, 0};
+    private static final int[] BISHOP_DIRECTION_COL = {1, -1, 1, -1};
+    private static final int[] BISHOP_DIRECTION_ROW = {1, 1, -1, -1};
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = {
+            0x3080081040002080L, 0x0840400010002000L, 0x1200201008420080L, 0x3180080035801001L,
+            0x0A00200200100409L, 0x0A00040810018200L, 0xA0802A0041000880L, 0x0200004184020F21L,
+            0x0400800020804000L, 0x420C400420100440L, 0x0412001020420080L, 0x4482004200102008L,
+            0x0140800800800400L, 0x0001000400030008L, 0x0041004100820024L, 0x200200023100804CL,
+            0x0080044001456011L, 0x001000C040002004L, 0x0068420011220480L, 0x2040808008001000L,
+            0x0211510028002500L, 0x0000480120403024L, 0x8020440091101208L, 0x800822000040A401L,
+            0x8880400080008028L, 0x0250004140002002L, 0x4989004100200016L, 0x0001010900100020L,
+            0x8204008080040800L, 0x0002000200100409L, 0x0431810080800200L, 0x0D28052E00004084L,
+            0x0080004000402000L, 0x0000401000402001L, 0x5001041145002000L, 0x4120823802801000L,
+            0x0004004008080080L, 0x9009000289000400L, 0x0004080184000210L, 0x0008800060800100L,
+            0x8600400080008020L, 0x4000200040008080L, 0x0510200041010018L, 0x180010010021000AL,
+            0x0204000800808005L, 0x002600081006000CL, 0x0200414802840010L, 0x4000408044020001L,
+            0x0000400080102080L, 0x0840804000200380L, 0x0020104020820200L, 0x0108201001018900L,
+            0x1005010800BC3100L, 0x0001000804000300L, 0x1428012842100400L, 0x208000A041040200L,
+            0x9100248000130241L, 0x0982008122449102L, 0x008100400C200011L, 0x8241000608201001L,
+            0x8402008408211002L, 0x0401000400020801L, 0x0812000100880402L, 0x0904002044148102L
+    };
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = {
+            0x90708502240400A2L, 0x4002AC0846014040L, 0x0008360246000000L, 0x0104104202800000L,
+            0x002E061000200740L, 0xE002021005000022L, 0x000E009220101180L, 0x0000110818020820L,
+            0x0801321430048200L, 0x1021200242021020L, 0x0000080214102001L, 0x4800022082030010L,
+            0x0240040421EA0881L, 0x8A2001042005C041L, 0x0002090108A004ADL, 0x0400088084012000L,
+            0x410E4040850820C0L, 0xA450000484008418L, 0x8150002108420A40L, 0x0000800802810288L,
+            0x0012010401214000L, 0x0001100A01100100L, 0x000220044804044AL, 0x0104401201040108L,
+            0x4004A00040088114L, 0x0210100144214200L, 0xB518120101040300L, 0xA010040080401021L,
+            0x4324840002802010L, 0x9400848003026004L, 0x800100404A080400L, 0x0000810040840E80L,
+            0x020210040A132016L, 0x0002080340201200L, 0x4204004804104080L, 0x0034080800A20A00L,
+            0xE001110400020020L, 0xF000C80A00004100L, 0x20900202000080C1L, 0x0C8822A100002301L,
+            0x1008880840004800L, 0x0401008820440400L, 0x10020A0104821000L, 0x8000002104002040L,
+            0x0741822009048604L, 0xD240482080200900L, 0x22100202004A1402L, 0x00010805004A0302L,
+            0x61060104A0041000L, 0x8980308430080000L, 0x9008202084102000L, 0x4002008042020082L,
+            0x003100F00E022000L, 0x0304102001C90080L, 0x1150208A14AA0421L, 0x20B0114104008000L,
+            0x280444008401A002L, 0x4000010518020240L, 0x041020420102C840L, 0x0500200900411083L,
+            0x0200020040304900L, 0x000148081010008CL, 0x42C0208810910040L, 0x80102101080A0042L
+    };
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            _init_square(sq, ROOK_DIRECTION_COL, ROOK_DIRECTION_ROW, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_ATTACKS);
+            _init_square(sq, BISHOP_DIRECTION_COL, BISHOP_DIRECTION_ROW, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_ATTACKS);
+        }
+    }
+
+    private MagicAttacks() {
+    }
+
+    /**
+     * Returns the squares attacked by a rook
+     *
+     * @param square    the square of the rook
+     * @param occupancy the occupied squares
+     * @return the bitboard of the attacked squares, including the first occupied square in every direction
+     */
+    public static long rookAttacks(int square, long occupancy) {
+        return ROOK_ATTACKS[square][(int) (((occupancy & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+    }
+
+    /**
+     * Returns the squares attacked by a bishop
+     *
+     * @param square    the square of the bishop
+     * @param occupancy the occupied squares
+     * @return the bitboard of the attacked squares, including the first occupied square in every direction
+     */
+    public static long bishopAttacks(int square, long occupancy) {
+        return BISHOP_ATTACKS[square][(int) (((occupancy & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+    }
+
+    /**
+     * Fills the mask, the shift and the attack table of a slider on a square
+     *
+     * @param sq      the square index
+     * @param dirCol  the column step of every direction of the slider
+     * @param dirRow  the row step of every direction of the slider
+     * @param masks   the relevant masks to fill
+     * @param magics  the magic numbers of the slider
+     * @param shifts  the shifts to fill
+     * @param attacks the attack tables to fill
+     */
+    private static void _init_square(int sq, int[] dirCol, int[] dirRow, long[] masks, long[] magics, int[] shifts, long[][] attacks) {
+        // the last square of every ray is not relevant, a piece on it doesn't block anything
+        long mask = 0L;
+        for (int dir = 0; dir < dirCol.length; dir++) {
+            int col = Bitboard.col(sq) + dirCol[dir];
+            int row = Bitboard.row(sq) + dirRow[dir];
+            while (Bitboard.bit(col + dirCol[dir], row + dirRow[dir]) != 0) {
+                mask |= Bitboard.bit(col, row);
+                col += dirCol[dir];
+                row += dirRow[dir];
+            }
+        }
+
+        int bits = Long.bitCount(mask);
+        masks[sq] = mask;
+        shifts[sq] = 64 - bits;
+        attacks[sq] = new long[1 << bits];
+        // every subset of the mask is enumerated with the carry rippler
+        long subset = 0L;
+        do {
+            attacks[sq][(int) ((subset * magics[sq]) >>> shifts[sq])] = _slow_attacks(sq, subset, dirCol, dirRow);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+    }
+
+    /**
+     * Computes the attacks of a slider walking every direction until the edge or the first occupied square, only used
+     * to fill the tables
+     *
+     * @param sq        the square of the slider
+     * @param occupancy the occupied squares
+     * @param dirCol    the column step of every direction
+     * @param dirRow    the row step of every direction
+     * @return the bitboard of the attacked squares
+     */
+    private static long _slow_attacks(int sq, long occupancy, int[] dirCol, int[] dirRow) {
+        long attacks = 0L;
+        for (int dir = 0; dir < dirCol.length; dir++) {
+            int col = Bitboard.col(sq) + dirCol[dir];
+            int row = Bitboard.row(sq) + dirRow[dir];
+            long target;
+            while ((target = Bitboard.bit(col, row)) != 0) {
+                attacks |= target;
+                if ((occupancy & target) != 0) break;
+                col += dirCol[dir];
+                row += dirRow[dir];
+            }
+        }
+        return attacks;
+    }
+
+}
@@ -0,0 +1,149 @@
+package it.matlice.matlichess.model;
+
+/**
+ * Utility class to work with moves encoded in a single int, so that they can be generated, stored and compared without
+ * creating objects.
+ * The bits 0-5 contain the source square, the bits 6-11 the destination square (see {@link Bitboard} for the square
+ * indexes), the bits 12-14 the type of the piece a pawn is promoted to, and the higher bits the flags that tell the
+ * chessboard which side effects the move has
+ */
+public final class Move {
+
+    // no move can go from A1 to A1, so 0 is never a valid move
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    // a pawn moving two squares forward, it sets the en passant target square
+    public static final int DOUBLE_PUSH = 1 << 16;
+    // the captured pawn is not on the destination square but beside the source one
+    public static final int EN_PASSANT = 1 << 17;
+    // the king moves by two squares, and the rook moves to the square it has crossed
+    public static final int CASTLING = 1 << 18;
+    public static final int PROMOTION = 1 << 19;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+
+    private Move() {
+    }
+
+    /**
+     * Encodes a move
+     *
+     * @param from  the source square
+     * @param to    the destination square
+     * @param flags the flags of the move, 0 for a quiet one
+     * @return the encoded move
+     */
+    public static int of(int from, int to, int flags) {
+        return from | (to << TO_SHIFT) | flags;
+    }
+
+    /**
+     * Encodes a pawn promotion
+     *
+     * @param from  the source square
+     * @param to    the destination square
+     * @param type  the type of the piece the pawn is promoted to, see {@link Piece}
+     * @param flags the other flags of the move, CAPTURE or 0
+     * @return the encoded move
+     */
+    public static int promotion(int from, int to, int type, int flags) {
+        return of(from, to, flags | PROMOTION) | (type << PROMOTION_SHIFT);
+    }
+
+    /**
+     * Returns the source square of a move
+     *
+     * @param move the encoded move
+     * @return the square index
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the destination square of a move
+     *
+     * @param move the encoded move
+     * @return the square index
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the type of the piece a pawn is promoted to, meaningful only if the move is a promotion
+     *
+     * @param move the encoded move
+     * @return the type of the piece, see {@link Piece}
+     */
+    public static int promotion(int move) {
+        return (move >>> PROMOTION_SHIFT) & 7;
+    }
+
+    /**
+     * Returns whether a move captures a piece, en passant included
+     *
+     * @param move the encoded move
+     * @return true if the move is a capture
+     */
+    public static boolean isCapture(int move) {
+        return (move & (CAPTURE | EN_PASSANT)) != 0;
+    }
+
+    /**
+     * Returns whether a move is a pawn moving two squares forward
+     *
+     * @param move the encoded move
+     * @return true if the move is a double push
+     */
+    public static boolean isDoublePush(int move) {
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    /**
+     * Returns whether a move is an en passant capture
+     *
+     * @param move the encoded move
+     * @return true if the move is en passant
+     */
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    /**
+     * Returns whether a move is a castling
+     *
+     * @param move the encoded move
+     * @return true if the move is a castling
+     */
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    /**
+     * Returns whether a move is a pawn promotion
+     *
+     * @param move the encoded move
+     * @return true if the move is a promotion
+     */
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    /**
+     * Returns the move in the notation used by the UCI protocol, like "e2e4" or "e7e8q"
+     *
+     * @param move the encoded move
+     * @return the move as string
+     */
+    public static String toString(int move) {
+        String s = "" + (char) ('a' + Bitboard.col(from(move))) + (Bitboard.row(from(move)) + 1)
+                + (char) ('a' + Bitboard.col(to(move))) + (Bitboard.row(to(move)) + 1);
+        if (isPromotion(move)) s += "pnbrqk".charAt(promotion(move));
+        return s;
+    }
+
+}
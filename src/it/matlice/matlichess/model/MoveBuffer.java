@@ -0,0 +1,210 @@
+package it.matlice.matlichess.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of encoded moves (see {@link Move}) backed by an int array.
+ * It is meant to be allocated once and reused: clearing it only resets the size
+ */
+public class MoveBuffer {
+
+    // a chess position never has more than 218 legal moves
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size = 0;
+
+    public MoveBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveBuffer(int capacity) {
+        this.moves = new int[capacity];
+    }
+
+    /**
+     * Appends a move
+     *
+     * @param move the encoded move
+     */
+    public void add(int move) {
+        if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+        moves[size++] = move;
+    }
+
+    /**
+     * Returns a move
+     *
+     * @param index the index of the move
+     * @return the encoded move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Replaces a move
+     *
+     * @param index the index of the move
+     * @param move  the new encoded move
+     */
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    /**
+     * Swaps two moves, used to sort them
+     *
+     * @param i the index of the first move
+     * @param j the index of the second move
+     */
+    public void swap(int i, int j) {
+        int tmp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = tmp;
+    }
+
+    /**
+     * Returns the number of moves in the buffer
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the buffer contains no move
+     *
+     * @return true if the buffer is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all the moves
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops the moves after the given size
+     *
+     * @param size the new size, not greater than the current one
+     */
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Looks for the move between two squares that promotes to the given piece, if it is a promotion
+     *
+     * @param from      the source square
+     * @param to        the destination square
+     * @param promotion the type of the piece the pawn is promoted to, see {@link Piece}
+     * @return the encoded move, or {@link Move#NONE} if there's no such move
+     */
+    public int find(int from, int to, int promotion) {
+        for (int i = 0; i < size; i++) {
+            int move = moves[i];
+            if (Move.from(move) == from && Move.to(move) == to && (!Move.isPromotion(move) || Move.promotion(move) == promotion))
+                return move;
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Looks for the first move between two squares.
+     * A promotion is encoded by a move for every piece with the same squares, the first one is returned
+     *
+     * @param from the source square
+     * @param to   the destination square
+     * @return the encoded move, or {@link Move#NONE} if there's no such move
+     */
+    public int find(int from, int to) {
+        for (int i = 0; i < size; i++)
+            if (Move.from(moves[i]) == from && Move.to(moves[i]) == to) return moves[i];
+        return Move.NONE;
+    }
+
+    /**
+     * Returns a view of this buffer that reads its current moves and can't change them
+     *
+     * @return the read-only view
+     */
+    public MoveBuffer readOnlyView() {
+        return new ReadOnlyView(this);
+    }
+
+    /**
+     * A buffer that reads the moves of another one, every method that would change the moves throws
+     * UnsupportedOperationException
+     */
+    private static final class ReadOnlyView extends MoveBuffer {
+        private final MoveBuffer source;
+
+        ReadOnlyView(MoveBuffer source) {
+            super(0);
+            this.source = source;
+        }
+
+        @Override
+        public void add(int move) {
+            throw new UnsupportedOperationException("read-only moves");
+        }
+
+        @Override
+        public int get(int index) {
+            if (index >= source.size) throw new IndexOutOfBoundsException(index);
+            return source.moves[index];
+        }
+
+        @Override
+        public void set(int index, int move) {
+            throw new UnsupportedOperationException("read-only moves");
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            throw new UnsupportedOperationException("read-only moves");
+        }
+
+        @Override
+        public int size() {
+            return source.size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return source.size == 0;
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("read-only moves");
+        }
+
+        @Override
+        public void truncate(int size) {
+            throw new UnsupportedOperationException("read-only moves");
+        }
+
+        @Override
+        public MoveBuffer readOnlyView() {
+            return this;
+        }
+
+        @Override
+        public int find(int from, int to, int promotion) {
+            return source.find(from, to, promotion);
+        }
+
+        @Override
+        public int find(int from, int to) {
+            return source.find(from, to);
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+package it.matlice.matlichess.model;
+
+import it.matlice.matlichess.PieceColor;
+
+/**
+ * Legal move generator based on check and pin masks.
+ * For a player it computes once per position the pieces that give check to his king, the pinned pieces and the rays
+ * they are pinned along; then the legal destinations of a piece are its reachable squares restricted by those masks,
+ * without playing the moves to see whether the king ends up under attack
+ */
+public class MoveGenerator {
+
+    private final Chessboard chessboard;
+
+    // the position the masks have been computed for
+    private long computedKey;
+    private PieceColor color = null;
+
+    private int kingSquare;
+    // the opponent pieces that attack the king
+    private long checkers;
+    // the squares a piece other than the king can move to in order to stop the check, all of them if there's no check
+    private long checkMask;
+    // the player pieces that cannot leave the line between the king and an opponent slider
+    private long pinned;
+    private final long[] pinRays = new long[64];
+
+    public MoveGenerator(Chessboard chessboard) {
+        this.chessboard = chessboard;
+    }
+
+    /**
+     * Computes the check and pin masks for the king of a player, if they are not already computed for the current position
+     *
+     * @param color the color of the player
+     */
+    private void update(PieceColor color) {
+        long key = chessboard.getPositionKey();
+        if (this.color == color && this.computedKey == key) return;
+        this.color = color;
+        this.computedKey = key;
+
+        kingSquare = chessboard.getKingSquare(color);
+        checkers = 0L;
+        checkMask = ~0L;
+        pinned = 0L;
+        if (kingSquare < 0) return;
+
+        PieceColor opponent = color.opponent();
+        long occupancy = chessboard.getOccupancy();
+        checkers = chessboard.attackersTo(kingSquare, opponent, occupancy);
+        if (Long.bitCount(checkers) > 1) checkMask = 0L; // double check, only the king can move
+        else if (checkers != 0) checkMask = checkers | Bitboard.BETWEEN[kingSquare][Bitboard.first(checkers)];
+
+        // the sliders that would attack the king on an empty chessboard, pin a piece if it is the only one in between
+        long queens = chessboard.getBitboard(opponent, Piece.QUEEN);
+        long snipers = (Bitboard.rookAttacks(kingSquare, 0L) & (chessboard.getBitboard(opponent, Piece.ROOK) | queens))
+                | (Bitboard.bishopAttacks(kingSquare, 0L) & (chessboard.getBitboard(opponent, Piece.BISHOP) | queens));
+        for (; snipers != 0; snipers &= snipers - 1) {
+            int sniper = Bitboard.first(snipers);
+            long between = Bitboard.BETWEEN[kingSquare][sniper] & occupancy;
+            if (Long.bitCount(between) == 1 && (between & chessboard.getColorBitboard(color)) != 0) {
+                pinned |= between;
+                pinRays[Bitboard.first(between)] = Bitboard.BETWEEN[kingSquare][sniper] | Bitboard.bit(sniper);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the king of a player is under attack
+     *
+     * @param color the color of the player
+     * @return true if the king is in check
+     */
+    public boolean isInCheck(PieceColor color) {
+        update(color);
+        return checkers != 0;
+    }
+
+    /**
+     * Returns the legal destinations of the piece on a square, including en passant captures and castling
+     *
+     * @param square the square index of the piece
+     * @return the bitboard of the squares the piece can legally move to, empty if the square is empty
+     */
+    public long legalDestinations(int square) {
+        return legalDestinations(square, true);
+    }
+
+    /**
+     * Returns the legal destinations of the piece on a square, see {@link #legalDestinations(int)}.
+     * The castling squares can be left out by the callers that have already checked castling with {@link #canCastle}
+     *
+     * @param square   the square index of the piece
+     * @param castling false to leave out the castling squares of the king
+     * @return the bitboard of the squares the piece can legally move to, empty if the square is empty
+     */
+    long legalDestinations(int square, boolean castling) {
+        Piece piece = chessboard.getPieceAt(square);
+        if (piece == null) return 0L;
+        update(piece.getColor());
+
+        if (piece.getType() == Piece.KING) return kingDestinations(square, castling);
+
+        long notOwn = ~chessboard.getColorBitboard(color);
+        long occupancy = chessboard.getOccupancy();
+        long targets;
+        switch (piece.getType()) {
+            case Piece.PAWN:
+                targets = pawnDestinations(square);
+                break;
+            case Piece.KNIGHT:
+                targets = Bitboard.KNIGHT_ATTACKS[square] & notOwn;
+                break;
+            case Piece.BISHOP:
+                targets = Bitboard.bishopAttacks(square, occupancy) & notOwn;
+                break;
+            case Piece.ROOK:
+                targets = Bitboard.rookAttacks(square, occupancy) & notOwn;
+                break;
+            default:
+                targets = Bitboard.queenAttacks(square, occupancy) & notOwn;
+        }
+
+        targets &= checkMask;
+        if ((pinned & Bitboard.bit(square)) != 0) targets &= pinRays[square];
+
+        if (piece.getType() == Piece.PAWN) targets |= enPassantDestination(square);
+        return targets;
+    }
+
+    /**
+     * Appends to a buffer the legal moves of the piece on a square, encoded straight from its legal destinations with
+     * the flags that describe their side effects, so that nothing is allocated
+     *
+     * @param square the square index of the piece
+     * @param moves  the buffer the moves are written to
+     */
+    public void addLegalMoves(int square, MoveBuffer moves) {
+        long targets = legalDestinations(square);
+        if (targets == 0) return;
+        Piece piece = chessboard.getPieceAt(square);
+        int type = piece.getType();
+        long opponent = chessboard.getColorBitboard(piece.getColor().opponent());
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboard.first(targets);
+            int flags = (opponent & Bitboard.bit(to)) != 0 ? Move.CAPTURE : 0;
+            if (type == Piece.PAWN) {
+                int row = Bitboard.row(to);
+                if (row == 0 || row == 7) {
+                    moves.add(Move.promotion(square, to, Piece.QUEEN, flags));
+                    moves.add(Move.promotion(square, to, Piece.KNIGHT, flags));
+                    moves.add(Move.promotion(square, to, Piece.ROOK, flags));
+                    moves.add(Move.promotion(square, to, Piece.BISHOP, flags));
+                    continue;
+                }
+                // a pawn moving diagonally to an empty square takes en passant
+                if (flags == 0 && Bitboard.col(to) != Bitboard.col(square)) flags = Move.EN_PASSANT;
+                else if (Math.abs(to - square) == 16) flags = Move.DOUBLE_PUSH;
+            } else if (type == Piece.KING && Math.abs(to - square) == 2) flags = Move.CASTLING;
+            moves.add(Move.of(square, to, flags));
+        }
+    }
+
+    /**
+     * Returns the pushes and the captures of a pawn, without en passant and without the check and pin restrictions
+     *
+     * @param square the square of the pawn
+     * @return the bitboard of the reachable squares
+     */
+    private long pawnDestinations(int square) {
+        long empty = ~chessboard.getOccupancy();
+        int row = Bitboard.row(square);
+        int dir = color == PieceColor.WHITE ? 1 : -1;
+        int startRow = color == PieceColor.WHITE ? 1 : 6;
+
+        long targets = Bitboard.bit(Bitboard.col(square), row + dir) & empty;
+        if (targets != 0 && row == startRow)
+            targets |= Bitboard.bit(Bitboard.col(square), row + 2 * dir) & empty;
+        return targets | (Bitboard.PAWN_ATTACKS[color.index][square] & chessboard.getColorBitboard(color.opponent()));
+    }
+
+    /**
+     * Returns the en passant capture of a pawn if it is legal.
+     * The capture removes two pawns from the same row, so the check is done by looking at the sliders that would attack
+     * the king after the move, which covers both pinned pawns and discovered checks along the row
+     *
+     * @param square the square of the pawn
+     * @return the bitboard with the en passant target square, or an empty one
+     */
+    private long enPassantDestination(int square) {
+        int target = chessboard.getEnPassantSquare();
+        // the target square is behind an opponent pawn, on the sixth row for white and on the third for black
+        if (target < 0 || Bitboard.row(target) != (color == PieceColor.WHITE ? 5 : 2)) return 0L;
+        if ((Bitboard.PAWN_ATTACKS[color.index][square] & Bitboard.bit(target)) == 0) return 0L;
+        if (kingSquare < 0) return Bitboard.bit(target);
+
+        int captured = color == PieceColor.WHITE ? target - 8 : target + 8;
+        // a check can be stopped either by blocking it or by capturing the pawn that gives it
+        if ((checkMask & (Bitboard.bit(target) | Bitboard.bit(captured))) == 0) return 0L;
+
+        PieceColor opponent = color.opponent();
+        long occupancy = (chessboard.getOccupancy() ^ Bitboard.bit(square) ^ Bitboard.bit(captured)) | Bitboard.bit(target);
+        long queens = chessboard.getBitboard(opponent, Piece.QUEEN);
+        if ((Bitboard.rookAttacks(kingSquare, occupancy) & (chessboard.getBitboard(opponent, Piece.ROOK) | queens)) != 0)
+            return 0L;
+        if ((Bitboard.bishopAttacks(kingSquare, occupancy) & (chessboard.getBitboard(opponent, Piece.BISHOP) | queens)) != 0)
+            return 0L;
+        return Bitboard.bit(target);
+    }
+
+    /**
+     * Returns the legal destinations of the king: the adjacent squares that are not attacked, looking through the king
+     * itself so that it cannot step back along the line of a slider, and the castling squares
+     *
+     * @param square   the square of the king
+     * @param castling false to leave out the castling squares
+     * @return the bitboard of the squares the king can legally move to
+     */
+    private long kingDestinations(int square, boolean castling) {
+        PieceColor opponent = color.opponent();
+        long occupancy = chessboard.getOccupancy() & ~Bitboard.bit(square);
+        long legal = 0L;
+        for (long targets = Bitboard.KING_ATTACKS[square] & ~chessboard.getColorBitboard(color); targets != 0; targets &= targets - 1) {
+            int target = Bitboard.first(targets);
+            if (chessboard.attackersTo(target, opponent, occupancy) == 0) legal |= Bitboard.bit(target);
+        }
+
+        // castling, only from the starting square of the king
+        if (!castling || checkers != 0 || square != (color == PieceColor.WHITE ? 4 : 60)) return legal;
+        if (canCastle(color, true)) legal |= Bitboard.bit(square + 2);
+        if (canCastle(color, false)) legal |= Bitboard.bit(square - 2);
+        return legal;
+    }
+
+    /**
+     * Checks whether a player can castle now: the right has not been lost, the squares between the king and the rook
+     * are empty, and the king is not in check and doesn't cross or reach an attacked square.
+     * The legal destinations of the king and the castling moves of {@link MovePattern#addKing()} both rely on this check
+     *
+     * @param color    the color of the player
+     * @param kingSide true for the king side, false for the queen side
+     * @return true if the castling is legal
+     */
+    public boolean canCastle(PieceColor color, boolean kingSide) {
+        int right = color == PieceColor.WHITE
+                ? (kingSide ? Chessboard.WHITE_KING_SIDE : Chessboard.WHITE_QUEEN_SIDE)
+                : (kingSide ? Chessboard.BLACK_KING_SIDE : Chessboard.BLACK_QUEEN_SIDE);
+        // the rights are reported only while the king and the rook are on their starting squares
+        if ((chessboard.getCastlingRights() & right) == 0) return false;
+
+        int king = color == PieceColor.WHITE ? 4 : 60;
+        int rook = kingSide ? king + 3 : king - 4;
+        int step = kingSide ? 1 : -1;
+        PieceColor opponent = color.opponent();
+        return (chessboard.getOccupancy() & Bitboard.BETWEEN[king][rook]) == 0
+                && !chessboard.isSquareAttacked(king, opponent)
+                && !chessboard.isSquareAttacked(king + step, opponent)
+                && !chessboard.isSquareAttacked(king + 2 * step, opponent);
+    }
+
+}
@@ -0,0 +1,232 @@
+package it.matlice.matlichess.model;
+
+import it.matlice.matlichess.PieceColor;
+
+/**
+ * Staged iterator over the legal moves of the player who has to move.
+ * The captures and the promotions are generated first and returned the most valuable victim first; the quiet moves
+ * are generated only when the captures are over and the consumer asks for another move, so a search that stops
+ * early, or a check for the existence of a move, never pays for them.
+ * The moves are written in buffers owned by the iterator, which is meant to be kept (one for every ply of a search)
+ * and reset for every position, so that no object is created while iterating
+ */
+public class MoveIterator {
+
+    private static final int STAGE_CAPTURES = 0;
+    private static final int STAGE_QUIETS = 1;
+    private static final int STAGE_DONE = 2;
+
+    private final Chessboard chessboard;
+    private final MoveBuffer moves = new MoveBuffer();
+    // the ordering score of every capture, parallel to the buffer
+    private final int[] scores = new int[256];
+    private int stage;
+    private int index;
+    // a quiet move to be returned before the captures, and skipped when the quiet moves are generated
+    private int firstMove = Move.NONE;
+    private boolean firstMovePending;
+
+    public MoveIterator(Chessboard chessboard) {
+        this.chessboard = chessboard;
+        reset();
+    }
+
+    /**
+     * Restarts the iteration from the current position of the chessboard
+     *
+     * @return this iterator
+     */
+    public MoveIterator reset() {
+        return reset(Move.NONE);
+    }
+
+    /**
+     * Restarts the iteration from the current position of the chessboard, returning a given move before any other.
+     * The move, usually the best one found by a previous search of the same position, is returned only if it is legal,
+     * so it can come from a table whose entries can collide
+     *
+     * @param firstMove the encoded move to try first, or {@link Move#NONE}
+     * @return this iterator
+     */
+    public MoveIterator reset(int firstMove) {
+        stage = STAGE_CAPTURES;
+        _generate(true);
+        this.firstMove = Move.NONE;
+        this.firstMovePending = false;
+        if (firstMove == Move.NONE) return this;
+        for (int i = 0; i < moves.size(); i++) {
+            if (moves.get(i) == firstMove) {
+                scores[i] = Integer.MAX_VALUE;
+                return this;
+            }
+        }
+        if (_is_legal_quiet(firstMove)) {
+            this.firstMove = firstMove;
+            this.firstMovePending = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the next legal move. The chessboard can be changed between two calls, as long as it is brought back to
+     * the position the iterator has been reset for
+     *
+     * @return the encoded move, or {@link Move#NONE} if there are no more moves
+     */
+    public int next() {
+        if (firstMovePending) {
+            firstMovePending = false;
+            return firstMove;
+        }
+        while (true) {
+            while (index == moves.size()) {
+                if (stage == STAGE_DONE) return Move.NONE;
+                if (++stage == STAGE_QUIETS) _generate(false);
+            }
+            if (stage == STAGE_CAPTURES) return _next_capture();
+            int move = moves.get(index++);
+            if (move != firstMove) return move;
+        }
+    }
+
+    /**
+     * Returns the next capture or promotion, without ever generating the quiet moves, like a quiescence search needs.
+     * Calls to next and nextCapture should not be mixed after the reset
+     *
+     * @return the encoded move, or {@link Move#NONE} if there are no more captures and promotions
+     */
+    public int nextCapture() {
+        if (stage != STAGE_CAPTURES || index == moves.size()) return Move.NONE;
+        return _next_capture();
+    }
+
+    /**
+     * Returns the best remaining capture, found by selection: the list is short and usually only the first ones are used
+     *
+     * @return the encoded move
+     */
+    private int _next_capture() {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++)
+            if (scores[i] > scores[best]) best = i;
+        if (best != index) {
+            moves.swap(index, best);
+            int tmp = scores[index];
+            scores[index] = scores[best];
+            scores[best] = tmp;
+        }
+        return moves.get(index++);
+    }
+
+    /**
+     * Returns whether the moves returned by now are only captures and promotions
+     *
+     * @return true if the quiet moves have not been reached yet
+     */
+    public boolean isCaptureStage() {
+        return stage == STAGE_CAPTURES;
+    }
+
+    /**
+     * Checks whether a move is one of the quiet moves the iterator would generate, with the same flags
+     *
+     * @param move the encoded move
+     * @return true if the move is legal and is neither a capture nor a promotion
+     */
+    private boolean _is_legal_quiet(int move) {
+        if (Move.isCapture(move) || Move.isEnPassant(move) || Move.isPromotion(move)) return false;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece piece = chessboard.getPieceAt(from);
+        if (piece == null || piece.getColor() != chessboard.getTurn() || chessboard.getPieceAt(to) != null) return false;
+        if ((chessboard.getMoveGenerator().legalDestinations(from) & Bitboard.bit(to)) == 0) return false;
+        int distance = Math.abs(to - from);
+        int flags = 0;
+        if (piece.getType() == Piece.PAWN) {
+            // the pawn moves to the last rank and to the en passant square are not quiet
+            int row = Bitboard.row(to);
+            if (row == 0 || row == 7 || to == chessboard.getEnPassantSquare()) return false;
+            if (distance == 16) flags = Move.DOUBLE_PUSH;
+        } else if (piece.getType() == Piece.KING && distance == 2) flags = Move.CASTLING;
+        return move == Move.of(from, to, flags);
+    }
+
+    /**
+     * Fills the buffer with the moves of a stage
+     *
+     * @param captures true for the captures and the promotions, false for the other moves
+     */
+    private void _generate(boolean captures) {
+        moves.clear();
+        index = 0;
+        PieceColor color = chessboard.getTurn();
+        long opponent = chessboard.getColorBitboard(color.opponent());
+        int enPassant = chessboard.getEnPassantSquare();
+        MoveGenerator generator = chessboard.getMoveGenerator();
+
+        for (long own = chessboard.getColorBitboard(color); own != 0; own &= own - 1) {
+            int from = Bitboard.first(own);
+            Piece piece = chessboard.getPieceAt(from);
+            long legal = generator.legalDestinations(from);
+            if (piece.getType() == Piece.PAWN) {
+                long special = (Bitboard.RANK_1 | Bitboard.RANK_8) | (enPassant >= 0 ? Bitboard.bit(enPassant) : 0L);
+                _add_pawn_moves(from, piece, captures ? legal & (opponent | special) : legal & ~(opponent | special), opponent, enPassant);
+            } else {
+                long targets = captures ? legal & opponent : legal & ~opponent;
+                for (; targets != 0; targets &= targets - 1) {
+                    int to = Bitboard.first(targets);
+                    if (captures) _add_capture(Move.of(from, to, Move.CAPTURE), piece, to);
+                    else
+                        moves.add(Move.of(from, to, piece.getType() == Piece.KING && Math.abs(to - from) == 2 ? Move.CASTLING : 0));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the moves of a pawn to some of its legal destinations
+     *
+     * @param from      the square of the pawn
+     * @param pawn      the pawn
+     * @param targets   the destinations of the stage
+     * @param opponent  the squares of the opponent pieces
+     * @param enPassant the en passant target square, -1 if there's none
+     */
+    private void _add_pawn_moves(int from, Piece pawn, long targets, long opponent, int enPassant) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboard.first(targets);
+            int flags = (opponent & Bitboard.bit(to)) != 0 ? Move.CAPTURE : 0;
+            int row = Bitboard.row(to);
+            if (row == 0 || row == 7) {
+                _add_capture(Move.promotion(from, to, Piece.QUEEN, flags), pawn, to);
+                _add_capture(Move.promotion(from, to, Piece.KNIGHT, flags), pawn, to);
+                _add_capture(Move.promotion(from, to, Piece.ROOK, flags), pawn, to);
+                _add_capture(Move.promotion(from, to, Piece.BISHOP, flags), pawn, to);
+            } else if (to == enPassant && flags == 0) {
+                _add_capture(Move.of(from, to, Move.EN_PASSANT), pawn, to);
+            } else if (flags != 0) {
+                _add_capture(Move.of(from, to, flags), pawn, to);
+            } else {
+                moves.add(Move.of(from, to, Math.abs(to - from) == 16 ? Move.DOUBLE_PUSH : 0));
+            }
+        }
+    }
+
+    /**
+     * Adds a capture or a promotion with its ordering score: the value of the victim first, then the value of the
+     * promoted piece, and the least valuable attacker among equal victims
+     *
+     * @param move     the encoded move
+     * @param attacker the moving piece
+     * @param to       the destination square
+     */
+    private void _add_capture(int move, Piece attacker, int to) {
+        Piece victim = chessboard.getPieceAt(to);
+        int score = (victim != null ? victim.getValue() : Move.isEnPassant(move) ? 1 : 0) * 64;
+        if (Move.isPromotion(move)) score += Piece.of(attacker.getColor(), Move.promotion(move)).getValue() * 8;
+        score -= Math.min(attacker.getValue(), 7);
+        scores[moves.size()] = score;
+        moves.add(move);
+    }
+
+}
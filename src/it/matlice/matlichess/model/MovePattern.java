@@ -1,47 +1,60 @@
 package it.matlice.matlichess.model;
 
-import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
-import it.matlice.matlichess.model.pieces.King;
-
-import java.util.function.Supplier;
 
 /**
  * Set of patterns used by the pieces to move along the chessboard
- * It also provides utility methods for the control of the came, like checking if the king is under attack
+ * The reachable squares are written as encoded moves (see {@link Move}) in a {@link MoveBuffer}, with the flags that
+ * describe their side effects, so that the chessboard can play them without further information
  */
 public class MovePattern {
 
     private final Chessboard chessboard;
-    private final Location pieceLocation;
+    private final int square;
     private final PieceColor myPieceColor;
-    private MoveList locations = new MoveList();
+    private final MoveBuffer moves;
+    // the index of the first move written by this pattern, the previous ones belong to other pieces
+    private final int start;
 
-    public MovePattern(Chessboard c, Location l, PieceColor myPieceColor) {
+    public MovePattern(Chessboard c, int square, PieceColor myPieceColor, MoveBuffer moves) {
         this.chessboard = c;
-        this.pieceLocation = l;
+        this.square = square;
         this.myPieceColor = myPieceColor;
+        this.moves = moves;
+        this.start = moves.size();
     }
 
     /**
-     * Utility class function used to add {@link Location}s to the private variable, according to the instruction given by the patterns
-     * When the program validates if a Chess box is reachable, it calls this method to save the locations.
-     * Returns a boolean to continue or stop the iteration.
+     * Utility class function used to add moves to the buffer, according to the instruction given by the patterns
+     * The squares occupied by the player's pieces are discarded, while the ones occupied by the opponent are kept as captures
      *
-     * @param col        the column index of the location to check
-     * @param row        the row index of the location to check
-     * @param pieceColor the player's color
-     * @return true if it's needed to stop the iteration, false to continue
+     * @param targets the bitboard of the squares reached by the pattern
      */
-    private boolean piece_can_take(int col, int row, PieceColor pieceColor) {
-        if (row > 7 || row < 0 || col > 7 || col < 0) return true;
-        if (chessboard.getPieceAt(col, row) != null) {
-            if (chessboard.getPieceAt(col, row).getColor().equals(pieceColor.opponent()))
-                locations.put(col, row);
-            return true;
+    private void addTargets(long targets) {
+        targets &= ~chessboard.getColorBitboard(myPieceColor);
+        long opponent = chessboard.getColorBitboard(myPieceColor.opponent());
+        while (targets != 0) {
+            int target = Bitboard.first(targets);
+            moves.add(Move.of(square, target, (opponent & Bitboard.bit(target)) != 0 ? Move.CAPTURE : 0));
+            targets &= targets - 1;
         }
-        locations.put(col, row);
-        return false;
+    }
+
+    /**
+     * Adds a pawn move, or the four promotions if the pawn reaches the last row
+     *
+     * @param target the destination square
+     * @param flags  the flags of the move
+     */
+    private void addPawnMove(int target, int flags) {
+        int row = Bitboard.row(target);
+        if (row == 0 || row == 7) {
+            moves.add(Move.promotion(square, target, Piece.QUEEN, flags));
+            moves.add(Move.promotion(square, target, Piece.KNIGHT, flags));
+            moves.add(Move.promotion(square, target, Piece.ROOK, flags));
+            moves.add(Move.promotion(square, target, Piece.BISHOP, flags));
+        } else
+            moves.add(Move.of(square, target, flags));
     }
 
     /**
@@ -52,104 +65,42 @@ public class MovePattern {
      * @return the updated pattern
      */
     public MovePattern addPawn() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
-
-        // forward movements
-        if (myPieceColor == PieceColor.WHITE) {
-            if (row == 7) return this; // end of chessboard, should not happen
-            else if (row == 1) // if still in original row, then it can go up two squares
-                if (chessboard.getPieceAt(col, row + 1) == null && chessboard.getPieceAt(col, row + 2) == null)
-                    locations.put(col, row + 2, () -> {
-                        chessboard.setEnPassantTargetSquare(new Location(col, row + 1));
-                        return null;
-                    });
-        } else /* if (myColor == Color.BLACK) */ {
-            if (row == 0) return this;
-            else if (row == 6)
-                if (chessboard.getPieceAt(col, row - 1) == null && chessboard.getPieceAt(col, row - 2) == null)
-                    locations.put(col, row - 2, () -> {
-                        chessboard.setEnPassantTargetSquare(new Location(col, row - 1));
-                        return null;
-                    });
-        }
-
+        int col = Bitboard.col(square);
+        int row = Bitboard.row(square);
+        long empty = ~chessboard.getOccupancy();
         int dir = (myPieceColor == PieceColor.WHITE) ? 1 : -1;
+        if (row + dir < 0 || row + dir > 7) return this; // end of chessboard, should not happen
 
-        if (chessboard.getPieceAt(col, row + dir) == null) {
-            Supplier<Piece> action;
-            if (row + dir == 0 || row + dir == 7) {
-                action = () -> {
-                    chessboard.promote(new Location(col, row), myPieceColor);
-                    return null;
-                };
-            } else {
-                action = () -> null;
-            }
-            locations.put(col, row + dir, action);
+        // forward movements, if still in original row then it can go up two squares
+        if ((empty & Bitboard.bit(col, row + dir)) != 0) {
+            addPawnMove(Bitboard.square(col, row + dir), 0);
+            if (row == (myPieceColor == PieceColor.WHITE ? 1 : 6) && (empty & Bitboard.bit(col, row + 2 * dir)) != 0)
+                moves.add(Move.of(square, Bitboard.square(col, row + 2 * dir), Move.DOUBLE_PUSH));
         }
 
-        // diagonal capture and en passant
-        Location target = new Location(col - 1, row + dir);
-        Location passantTarget = new Location(col - 1, row);
-        if (col > 0) _pawnCapture(chessboard, myPieceColor, target, passantTarget, pieceLocation);
+        // diagonal captures
+        long attacks = Bitboard.PAWN_ATTACKS[myPieceColor.index][square];
+        long captures = attacks & chessboard.getColorBitboard(myPieceColor.opponent());
+        while (captures != 0) {
+            addPawnMove(Bitboard.first(captures), Move.CAPTURE);
+            captures &= captures - 1;
+        }
 
-        target = new Location(col + 1, row + dir);
-        passantTarget = new Location(col + 1, row);
-        if (col < 7) _pawnCapture(chessboard, myPieceColor, target, passantTarget, pieceLocation);
+        // en passant, the target square is empty and the captured pawn is beside this one
+        int enPassant = chessboard.getEnPassantSquare();
+        if (enPassant >= 0 && (attacks & Bitboard.bit(enPassant) & empty) != 0)
+            moves.add(Move.of(square, enPassant, Move.EN_PASSANT));
 
         return this;
     }
 
-    /**
-     * Evaluates whether a pawn can capture a piece diagonally, or capture a pawn en passant
-     *
-     * @param chessboard      chessboard
-     * @param myPieceColor    color
-     * @param moveTarget      the target location the pawn can capture and move to
-     * @param enPassantTarget the location of the other pawn that can be captured en passant
-     * @param actualPosition  the actual position of the pawn
-     */
-    private void _pawnCapture(Chessboard chessboard, PieceColor myPieceColor, Location moveTarget, Location enPassantTarget, Location actualPosition) {
-        if (chessboard.getPieceAt(moveTarget) != null) {
-            // normal diagonal capture
-            if (chessboard.getPieceAt(moveTarget).getColor().equals(myPieceColor.opponent())) {
-                Supplier<Piece> action;
-                if (moveTarget.row() == 0 || moveTarget.row() == 7) {
-                    action = () -> {
-                        chessboard.promote(actualPosition, myPieceColor);
-                        return null;
-                    };
-                } else {
-                    action = () -> null;
-                }
-                locations.put(moveTarget, action);
-            }
-
-        } else if (moveTarget.equals(chessboard.getEnPassantTargetSquare())) {
-            // left en passant
-            locations.put(moveTarget, () -> {
-                Piece p = chessboard.getPieceAt(enPassantTarget);
-                chessboard.removePiece(enPassantTarget);
-                return p;
-            });
-        }
-    }
-
     /**
      * Pattern to add the reachable locations across the row
      *
      * @return the updated pattern
      */
     public MovePattern addRow() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
-        for (int i = col + 1; i < 8; i++)
-            if (piece_can_take(i, row, myPieceColor)) break;
-
-        for (int i = col - 1; i >= 0; i--) {
-            if (piece_can_take(i, row, myPieceColor)) break;
-        }
+        addTargets(Bitboard.rowAttacks(square, chessboard.getOccupancy()));
         return this;
     }
 
@@ -159,13 +110,7 @@ public class MovePattern {
      * @return the updated pattern
      */
     public MovePattern addColumn() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
-        for (int i = row + 1; i < 8; i++)
-            if (piece_can_take(col, i, myPieceColor)) break;
-        for (int i = row - 1; i >= 0; i--)
-            if (piece_can_take(col, i, myPieceColor)) break;
-
+        addTargets(Bitboard.columnAttacks(square, chessboard.getOccupancy()));
         return this;
     }
 
@@ -175,21 +120,37 @@ public class MovePattern {
      * @return the updated pattern
      */
     public MovePattern addDiagonals() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
+        addTargets(Bitboard.diagonalAttacks(square, chessboard.getOccupancy()));
+        return this;
+    }
 
-        for (int i = 1; i < 8; i++) {
-            if (piece_can_take(col + i, row + i, myPieceColor)) break;
-        }
-        for (int i = 1; i < 8; i++) {
-            if (piece_can_take(col - i, row + i, myPieceColor)) break;
-        }
-        for (int i = 1; i < 8; i++) {
-            if (piece_can_take(col + i, row - i, myPieceColor)) break;
-        }
-        for (int i = 1; i < 8; i++) {
-            if (piece_can_take(col - i, row - i, myPieceColor)) break;
-        }
+    /**
+     * Pattern to add the locations reachable by a rook, across the row and the column in a single lookup
+     *
+     * @return the updated pattern
+     */
+    public MovePattern addRook() {
+        addTargets(Bitboard.rookAttacks(square, chessboard.getOccupancy()));
+        return this;
+    }
+
+    /**
+     * Pattern to add the locations reachable by a bishop
+     *
+     * @return the updated pattern
+     */
+    public MovePattern addBishop() {
+        addTargets(Bitboard.bishopAttacks(square, chessboard.getOccupancy()));
+        return this;
+    }
+
+    /**
+     * Pattern to add the locations reachable by a queen, across the row, the column and the diagonals
+     *
+     * @return the updated pattern
+     */
+    public MovePattern addQueen() {
+        addTargets(Bitboard.queenAttacks(square, chessboard.getOccupancy()));
         return this;
     }
 
@@ -199,16 +160,7 @@ public class MovePattern {
      * @return the updated pattern
      */
     public MovePattern addKnight() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
-        piece_can_take(col + 1, row + 2, myPieceColor);
-        piece_can_take(col - 1, row + 2, myPieceColor);
-        piece_can_take(col + 2, row + 1, myPieceColor);
-        piece_can_take(col - 2, row + 1, myPieceColor);
-        piece_can_take(col + 1, row - 2, myPieceColor);
-        piece_can_take(col - 1, row - 2, myPieceColor);
-        piece_can_take(col + 2, row - 1, myPieceColor);
-        piece_can_take(col - 2, row - 1, myPieceColor);
+        addTargets(Bitboard.KNIGHT_ATTACKS[square]);
         return this;
     }
 
@@ -218,79 +170,44 @@ public class MovePattern {
      * @return the updated pattern
      */
     public MovePattern addKing() {
-        int col = pieceLocation.col();
-        int row = pieceLocation.row();
-        piece_can_take(col + 1, row + 1, myPieceColor);
-        piece_can_take(col, row + 1, myPieceColor);
-        piece_can_take(col - 1, row + 1, myPieceColor);
-        piece_can_take(col + 1, row, myPieceColor);
-        piece_can_take(col - 1, row, myPieceColor);
-        piece_can_take(col + 1, row - 1, myPieceColor);
-        piece_can_take(col, row - 1, myPieceColor);
-        piece_can_take(col - 1, row - 1, myPieceColor);
+        addTargets(Bitboard.KING_ATTACKS[square]);
 
-        // castling
-        King king = (King) chessboard.getPieceAt(pieceLocation);
-        if (king != null) {
-
-            // since the castling moves are symmetrical, the only thing that changes is the row
-            int castlingRow = myPieceColor.equals(PieceColor.WHITE) ? 0 : 7;
-
-            if (king.canCastle(chessboard, "Queen"))
-                this.locations.put(2, castlingRow, () -> {
-                    // moving the tower after castling
-                    Piece castlingRook = chessboard.getPieceAt(new Location(0, castlingRow));
-                    castlingRook.hasBeenMoved(chessboard);
-                    chessboard._set_piece_at(new Location(3, castlingRow), castlingRook);
-                    chessboard.removePiece(new Location(0, castlingRow));
-                    return null;
-                });
-            if (king.canCastle(chessboard, "King"))
-                this.locations.put(6, castlingRow, () -> {
-                    // moving the tower after castling
-                    Piece castlingRook = chessboard.getPieceAt(new Location(7, castlingRow));
-                    castlingRook.hasBeenMoved(chessboard);
-                    chessboard._set_piece_at(new Location(5, castlingRow), castlingRook);
-                    chessboard.removePiece(new Location(7, castlingRow));
-                    return null;
-                });
-        }
+        // castling, already checked as a whole, the chessboard moves the rook when it plays the move
+        MoveGenerator generator = chessboard.getMoveGenerator();
+        if (generator.canCastle(myPieceColor, false))
+            moves.add(Move.of(square, square - 2, Move.CASTLING));
+        if (generator.canCastle(myPieceColor, true))
+            moves.add(Move.of(square, square + 2, Move.CASTLING));
 
         return this;
     }
 
     /**
      * Validates the MovePattern checking if the king will result under attack after the move.
-     * Removes the wrong Locations
+     * Removes the wrong moves
      *
      * @return the updated pattern
      */
     public MovePattern validate() {
-
-        MoveList validatedLocations = new MoveList();
-        validatedLocations.putAll(this.locations);
-
-        boolean has_moved = chessboard.getPieceAt(pieceLocation).hasMoved();
-        for (Location dest : locations.keySet()) {
-            Chessboard nextMoveBoard = chessboard.clone();
-            chessboard.getPieceAt(pieceLocation)._reset_movement(has_moved);
-            nextMoveBoard._make_move(pieceLocation, dest, () -> null);
-            if (chessboard.getKing(this.myPieceColor).isUnderCheck(nextMoveBoard))
-                validatedLocations.remove(dest);
-            chessboard.getPieceAt(pieceLocation)._reset_movement(has_moved);
+        // the legal destinations come from the check and pin masks of the position, no move has to be played;
+        // the castling moves are legal already, see addKing
+        long legal = chessboard.getMoveGenerator().legalDestinations(square, false);
+        int size = start;
+        for (int i = start; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.isCastling(move) || (legal & Bitboard.bit(Move.to(move))) != 0) moves.set(size++, move);
         }
-
-        this.locations = validatedLocations;
+        moves.truncate(size);
         return this;
     }
 
     /**
-     * Returns the saved locations
+     * Returns the buffer the moves have been written to
      *
-     * @return the saved locations
+     * @return the move buffer
      */
-    public MoveList get() {
-        return locations;
+    public MoveBuffer get() {
+        return moves;
     }
 
 }
@@ -2,53 +2,72 @@ package it.matlice.matlichess.model;
 
 import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
-import it.matlice.matlichess.exceptions.InvalidMoveException;
-
-import java.util.Objects;
-import java.util.function.Supplier;
+import it.matlice.matlichess.model.pieces.*;
 
 /**
  * Abstract class to identify a general chess piece. It contains attributes which are the same for all the pieces
  * Every concrete piece which inherits this class will implements its unique way to move
+ * A piece holds no state about the game, so the same immutable instance of every kind of piece (see {@link #of})
+ * is shared by all the squares and chessboards; what depends on the history of the game, like the castling rights,
+ * is kept by the {@link Chessboard}
  */
 public abstract class Piece {
 
+    // type indexes, used to address the bitboards of the Chessboard
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
     private final String name;
     private final String shortName;
     private final int value;
+    private final int type;
     private final PieceColor pieceColor;
-    protected boolean has_moved = false;
 
-    public Piece(String name, String shortName, int value, PieceColor pieceColor) {
+    // the shared instances, indexed as the bitboards (see getIndex)
+    private static final Piece[] PIECES = new Piece[12];
+
+    static {
+        for (PieceColor color : new PieceColor[]{PieceColor.WHITE, PieceColor.BLACK}) {
+            PIECES[color.index * 6 + PAWN] = new Pawn(color);
+            PIECES[color.index * 6 + KNIGHT] = new Knight(color);
+            PIECES[color.index * 6 + BISHOP] = new Bishop(color);
+            PIECES[color.index * 6 + ROOK] = new Rook(color);
+            PIECES[color.index * 6 + QUEEN] = new Queen(color);
+            PIECES[color.index * 6 + KING] = new King(color);
+        }
+    }
+
+    public Piece(String name, String shortName, int value, int type, PieceColor pieceColor) {
         this.name = name;
         this.shortName = shortName;
         this.value = value;
+        this.type = type;
         this.pieceColor = pieceColor;
     }
 
     /**
-     * Checks if the piece has already made a move
+     * Returns the shared instance of a kind of piece
      *
-     * @return a boolean to describe if the piece has moved
+     * @param color the color of the piece
+     * @param type  the type of the piece, one of the type indexes
+     * @return the immutable {@link Piece}
      */
-    public boolean hasMoved() {
-        return has_moved;
+    public static Piece of(PieceColor color, int type) {
+        return PIECES[color.index * 6 + type];
     }
 
     /**
-     * Method used to reset the movement of a piece during th validation of a move
+     * Returns the type of piece identified by a short name, as used by the FEN and by the UCI promotions
      *
-     * @param v boolean to set the variable in the class
-     */
-    public void _reset_movement(boolean v) {
-        has_moved = v;
-    }
-
-    /**
-     * Notifies that a piece has made its first move
+     * @param shortName the short name, upper or lower case
+     * @return the type index, -1 if the name identifies no piece
      */
-    public void hasBeenMoved(Chessboard c) {
-        this.has_moved = true;
+    public static int typeOf(char shortName) {
+        return "pnbrqk".indexOf(Character.toLowerCase(shortName));
     }
 
     /**
@@ -87,24 +106,43 @@ public abstract class Piece {
         return value;
     }
 
+    /**
+     * Getter for the type of the piece, one of the type indexes
+     *
+     * @return the type of the piece
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the index of the bitboard that contains this kind of piece: white pieces first, then black ones
+     *
+     * @return the bitboard index, from 0 to 11
+     */
+    public int getIndex() {
+        return pieceColor.index * 6 + type;
+    }
+
     /**
      * Describes the Locations reachable by a chess Piece without checking if the king is under attack
      *
      * @param chessboard the {@link Chessboard} where are placed the pieces
-     * @param myPosition the Position of the Piece
+     * @param square     the square index of the Piece
+     * @param moves      the buffer the moves are written to
      * @return the MovePattern of the piece without checking if the king is under attack
      */
-    public abstract MovePattern unvalidated_move_pattern(Chessboard chessboard, Location myPosition);
+    public abstract MovePattern unvalidated_move_pattern(Chessboard chessboard, int square, MoveBuffer moves);
 
     /**
-     * Describes the Locations reachable by a chess Piece
+     * Describes the Locations reachable by a chess Piece, appending its legal moves to a buffer
      *
      * @param chessboard the {@link Chessboard} where are placed the pieces, also CHECKING whether the king si under attack
-     * @param myPosition the Position of the Piece
-     * @return the MovePattern of the piece
+     * @param square     the square index of the Piece
+     * @param moves      the buffer the moves are written to
      */
-    public MoveList getAvailableMoves(Chessboard chessboard, Location myPosition) {
-        return this.unvalidated_move_pattern(chessboard, myPosition).validate().get();
+    public void getAvailableMoves(Chessboard chessboard, int square, MoveBuffer moves) {
+        this.unvalidated_move_pattern(chessboard, square, moves).validate();
     }
 
     /**
@@ -116,32 +154,11 @@ public abstract class Piece {
      * @return if the piece can move to a certain Location
      */
     public boolean isMoveAllowed(Chessboard chessboard, Location destination, Location myPosition) {
-        return getAvailableMoves(chessboard, myPosition).containsKey(destination);
-    }
-
-    /**
-     * If you pass a generic move as destination (with only location set), this function returns the actual move to do,
-     * with the action set if needed
-     *
-     * @param chessboard  Chessboard
-     * @param destination the move location to go to
-     * @param myPosition  the position of the piece
-     */
-    public Supplier<Piece> getAction(Chessboard chessboard, Location destination, Location myPosition) {
-        MoveList moves = getAvailableMoves(chessboard, myPosition);
-        if (!moves.containsKey(destination)) throw new InvalidMoveException();
-        return moves.get(destination);
+        return chessboard.findMove(myPosition, destination) != Move.NONE;
     }
 
     /**
-     * Abstract method that clone a Piece into an identical other piece
-     *
-     * @return the cloned Piece
-     */
-    public abstract Piece clone();
-
-    /**
-     * Returns whether two pieces are identical, based on type color and if they've moved
+     * Returns whether two pieces are identical, based on type and color
      *
      * @param o the other Piece
      * @return true if they are identical
@@ -151,7 +168,12 @@ public abstract class Piece {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Piece piece = (Piece) o;
-        return value == piece.value && has_moved == piece.has_moved && Objects.equals(name, piece.name) && Objects.equals(shortName, piece.shortName) && pieceColor == piece.pieceColor;
+        return type == piece.type && pieceColor == piece.pieceColor;
+    }
+
+    @Override
+    public int hashCode() {
+        return getIndex();
     }
 
 }
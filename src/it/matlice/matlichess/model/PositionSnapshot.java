@@ -0,0 +1,159 @@
+package it.matlice.matlichess.model;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.PieceColor;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of what the readers of a game need to know about a position: the FEN, the player who has to move,
+ * the state of the game, the legal moves and the keys of the positions that can still be repeated.
+ * The controller creates one after every move and publishes it at once, so that the view and the network threads
+ * can query it without locks while the chessboard keeps changing on the game thread
+ */
+public final class PositionSnapshot {
+
+    private final String fen;
+    private final String shortFen;
+    private final PieceColor turn;
+    private final GameState gameState;
+    private final long positionKey;
+    private final long[] positionHistory;
+    private final int[] legalMoves;
+
+    /**
+     * Takes a snapshot of the current position of a chessboard.
+     * It must be called by the thread that moves the pieces
+     *
+     * @param c the chessboard
+     */
+    public PositionSnapshot(Chessboard c) {
+        MoveBuffer moves = c.getLegalMoves();
+        this.legalMoves = new int[moves.size()];
+        for (int i = 0; i < legalMoves.length; i++) legalMoves[i] = moves.get(i);
+        this.fen = c.toFEN(true);
+        this.shortFen = c.toFEN(false);
+        this.turn = c.getTurn();
+        this.gameState = c.getGameState();
+        this.positionKey = c.getPositionKey();
+        this.positionHistory = c.getPositionHistory();
+    }
+
+    /**
+     * Returns the FEN of the position
+     *
+     * @param complete set true if you want the compete fen, false to cut the move numbers
+     * @return the string representation of the FEN
+     */
+    public String getFen(boolean complete) {
+        return complete ? fen : shortFen;
+    }
+
+    /**
+     * Getter for the turn
+     *
+     * @return which player has to move
+     */
+    public PieceColor getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the state of the game in this position
+     *
+     * @return the state of the game
+     */
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position
+     *
+     * @return the 64 bit key of the position
+     */
+    public long getPositionKey() {
+        return positionKey;
+    }
+
+    /**
+     * Returns the keys of the positions reached since the last capture or pawn advance, the last one is this position
+     *
+     * @return a copy of the keys of the positions, oldest first
+     */
+    public long[] getPositionHistory() {
+        return Arrays.copyOf(positionHistory, positionHistory.length);
+    }
+
+    /**
+     * Returns the number of legal moves of the player who has to move
+     *
+     * @return the number of moves
+     */
+    public int getLegalMoveCount() {
+        return legalMoves.length;
+    }
+
+    /**
+     * Returns a legal move of the player who has to move
+     *
+     * @param index the index of the move, lower than getLegalMoveCount
+     * @return the encoded move, see {@link Move}
+     */
+    public int getLegalMove(int index) {
+        return legalMoves[index];
+    }
+
+    /**
+     * Returns the squares the piece on a square can legally move to
+     *
+     * @param from the location of the piece
+     * @return the bitboard of the destinations, empty if the piece can't move or doesn't belong to the player who has to move
+     */
+    public long getDestinations(Location from) {
+        int square = from.square();
+        long destinations = 0L;
+        for (int move : legalMoves)
+            if (Move.from(move) == square) destinations |= Bitboard.bit(Move.to(move));
+        return destinations;
+    }
+
+    /**
+     * Looks for the legal move between two locations
+     *
+     * @param from source of the move
+     * @param to   destination of the move
+     * @return the encoded move, or {@link Move#NONE} if the move is not allowed
+     */
+    public int findMove(Location from, Location to) {
+        int fromSquare = from.square();
+        int toSquare = to.square();
+        for (int move : legalMoves)
+            if (Move.from(move) == fromSquare && Move.to(move) == toSquare) return move;
+        return Move.NONE;
+    }
+
+    /**
+     * Returns whether a move is valid in this position
+     *
+     * @param from source of the move
+     * @param to   destination of the move
+     * @return true if the move is valid
+     */
+    public boolean isMoveValid(Location from, Location to) {
+        return findMove(from, to) != Move.NONE;
+    }
+
+    /**
+     * Returns whether the move is a pawn promotion
+     *
+     * @param from source of the move
+     * @param to   destination of the move
+     * @return true if the specified move is a legal promotion
+     */
+    public boolean isPromoting(Location from, Location to) {
+        return Move.isPromotion(findMove(from, to));
+    }
+
+}
@@ -0,0 +1,50 @@
+package it.matlice.matlichess.model;
+
+/**
+ * Random keys used to compute the Zobrist hash of a position, a 64 bit number that identifies it.
+ * The hash is the xor of the keys of every piece on its square, of the side to move, of the castling rights
+ * and of the en passant column, so it can be updated incrementally when a piece is added or removed.
+ * The keys are generated from a fixed seed, so that every instance of the program computes the same hashes
+ */
+public final class Zobrist {
+
+    // indexed by the bitboard index of the piece (see Piece#getIndex), then by its square
+    public static final long[][] PIECE_SQUARE = new long[12][64];
+    public static final long BLACK_TO_MOVE;
+    // indexed by the castling rights mask
+    public static final long[] CASTLING = new long[16];
+    // indexed by the column of the en passant target square
+    public static final long[] EN_PASSANT = new long[8];
+
+    private static long seed = 0x4D41544C49434845L;
+
+    static {
+        for (int i = 0; i < 12; i++)
+            for (int sq = 0; sq < 64; sq++)
+                PIECE_SQUARE[i][sq] = next();
+        BLACK_TO_MOVE = next();
+        // every right has its own key, a mask of rights is the xor of them
+        long[] rights = {next(), next(), next(), next()};
+        for (int mask = 0; mask < 16; mask++)
+            for (int right = 0; right < 4; right++)
+                if ((mask & (1 << right)) != 0) CASTLING[mask] ^= rights[right];
+        for (int col = 0; col < 8; col++)
+            EN_PASSANT[col] = next();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * SplitMix64 generator, used only while filling the tables
+     *
+     * @return the next pseudo random number
+     */
+    private static long next() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
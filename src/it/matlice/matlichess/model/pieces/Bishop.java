@@ -1,8 +1,8 @@
 package it.matlice.matlichess.model.pieces;
 
-import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.MoveBuffer;
 import it.matlice.matlichess.model.MovePattern;
 import it.matlice.matlichess.model.Piece;
 
@@ -12,32 +12,21 @@ import it.matlice.matlichess.model.Piece;
 public class Bishop extends Piece {
 
     public Bishop(PieceColor pieceColor) {
-        super("Bishop", "B", 3, pieceColor);
+        super("Bishop", "B", 3, BISHOP, pieceColor);
     }
 
     /**
      * Describes the Locations reachable by a chess Bishop without checking if the king is under attack
      *
      * @param chessboard the {@link Chessboard} where are placed the pieces
-     * @param myPosition the Position of the Bishop
+     * @param square     the square index of the Bishop
+     * @param moves      the buffer the moves are written to
      * @return the MovePattern of the piece without checking if the king is under attack
      */
     @Override
-    public MovePattern unvalidated_move_pattern(Chessboard chessboard, Location myPosition) {
-        return new MovePattern(chessboard, myPosition, this.getColor())
-                .addDiagonals();
-    }
-
-    /**
-     * Abstract method that clone a Bishop into an identical other Bishop
-     *
-     * @return the cloned Bishop
-     */
-    @Override
-    public Piece clone() {
-        Bishop clone = new Bishop(this.getColor());
-        clone.has_moved = this.has_moved;
-        return clone;
+    public MovePattern unvalidated_move_pattern(Chessboard chessboard, int square, MoveBuffer moves) {
+        return new MovePattern(chessboard, square, this.getColor(), moves)
+                .addBishop();
     }
 
 }
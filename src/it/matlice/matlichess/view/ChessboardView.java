@@ -14,8 +14,6 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Set;
 
 import static it.matlice.matlichess.view.PieceView.locationToPointer;
@@ -332,7 +330,7 @@ public class ChessboardView extends JPanel implements MouseListener, MouseMotion
      * @return the initial and the final location in an array
      * @throws InterruptedException
      */
-    public List<Location> waitForUserMove() throws InterruptedException {
+    public String waitForUserMove() throws InterruptedException {
         Location obtained;
         do {
             this.askMove();
@@ -343,12 +341,11 @@ public class ChessboardView extends JPanel implements MouseListener, MouseMotion
             this.wait_move.r_release(null);
             this.asking_move = false;
         } while (this.move_from == null || obtained == null);
-        if (Game.getInstance().isPromotionRequired(move_from, obtained)) {
-            String promotion = new PromotionChoiceBox(turn).askPromotion(getPromotionCoordinate(obtained));
-            Game.getInstance().setPromotion(promotion);
-        }
+        String move = this.move_from.toString() + obtained.toString();
+        if (Game.getInstance().isPromotionRequired(move_from, obtained))
+            move += new PromotionChoiceBox(turn).askPromotion(getPromotionCoordinate(obtained));
         this.feasableMoves = null;
-        return Arrays.asList(this.move_from, obtained);
+        return move;
     }
 
     /**
@@ -0,0 +1,134 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bytes allocated by the model on the calling thread, averaged over a corpus of positions.
+ * Every operation has a budget, in bytes per call, that can be changed with the system property
+ * matlichess.allocation.(name of the operation); an operation that allocates more makes the test fail.
+ * The tests are skipped on the virtual machines that can't measure the allocations of a thread
+ */
+public class AllocationBudget {
+
+    private static final String[] CORPUS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/r4PPP/1R4K1 w - - 0 40",
+    };
+
+    // the calls measured for every position, after as many calls to warm up the compiler
+    private static final int ROUNDS = 20000;
+
+    private static final com.sun.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+    private final Chessboard[] chessboards = new Chessboard[CORPUS.length];
+    // the source and the destination of a legal move of every position
+    private final Location[][] moves = new Location[CORPUS.length][2];
+    private final MoveBuffer buffer = new MoveBuffer();
+
+    public AllocationBudget() {
+        for (int i = 0; i < CORPUS.length; i++) {
+            chessboards[i] = new Chessboard();
+            chessboards[i].setPosition(CORPUS[i]);
+            int move = chessboards[i].getLegalMoves().get(0);
+            moves[i][0] = Location.of(Move.from(move));
+            moves[i][1] = Location.of(Move.to(move));
+        }
+    }
+
+    private static boolean measurable() {
+        if (THREADS == null || !THREADS.isThreadAllocatedMemorySupported()) return false;
+        if (!THREADS.isThreadAllocatedMemoryEnabled()) THREADS.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs an operation on every position, first to warm up and then measuring
+     *
+     * @param operation the operation, given the index of the position
+     * @return the bytes allocated per call
+     */
+    private static double _measure(Operation operation) {
+        for (int r = 0; r < ROUNDS; r++)
+            for (int i = 0; i < CORPUS.length; i++) operation.run(i);
+
+        long start = allocatedBytes();
+        for (int r = 0; r < ROUNDS; r++)
+            for (int i = 0; i < CORPUS.length; i++) operation.run(i);
+        return (double) (allocatedBytes() - start) / ((long) ROUNDS * CORPUS.length);
+    }
+
+    /**
+     * Measures an operation and checks its budget
+     *
+     * @param name          the name of the operation
+     * @param defaultBudget the bytes per call allowed when the system property is not set
+     * @param operation     the operation, given the index of the position
+     * @param baseline      the part of the operation that is not counted, given the index of the position, or null
+     */
+    private static void checkBudget(String name, long defaultBudget, Operation operation, Operation baseline) {
+        long budget = Long.getLong("matlichess.allocation." + name, defaultBudget);
+        double perCall = _measure(operation);
+        if (baseline != null) perCall = Math.max(0, perCall - _measure(baseline));
+
+        assertTrue(perCall <= budget, name + " allocates " + perCall + " bytes per call, the budget is " + budget);
+    }
+
+    private interface Operation {
+        void run(int position);
+    }
+
+    @Test
+    public void getAvailableMoves() {
+        Assumptions.assumeTrue(measurable());
+        // nothing: the moves are written in the buffer, which is reused
+        checkBudget("getAvailableMoves", 8, i -> {
+            buffer.clear();
+            chessboards[i].getAvailableMoves(buffer);
+        }, null);
+    }
+
+    @Test
+    public void move() {
+        Assumptions.assumeTrue(measurable());
+        // nothing: the undo records and the position history are reused
+        checkBudget("move", 8, i -> {
+            chessboards[i].move(moves[i][0], moves[i][1]);
+            chessboards[i].unmakeMove();
+        }, null);
+    }
+
+    @Test
+    public void getGameState() {
+        Assumptions.assumeTrue(measurable());
+        // the state of a new position, like after every move of a game: the move is needed to throw away the cached
+        // legal moves, so it is measured on its own and not counted.
+        // Nothing: the legal moves are generated in the buffer of the chessboard
+        checkBudget("getGameState", 8, i -> {
+            chessboards[i].move(moves[i][0], moves[i][1]);
+            chessboards[i].getGameState();
+            chessboards[i].unmakeMove();
+        }, i -> {
+            chessboards[i].move(moves[i][0], moves[i][1]);
+            chessboards[i].unmakeMove();
+        });
+    }
+
+}
@@ -0,0 +1,63 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.exceptions.InvalidEncodingException;
+import it.matlice.matlichess.model.Chessboard;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Encoding {
+
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 99 1234",
+            "4k3/8/8/8/8/8/8/4K3 w - - 0 1",
+    };
+
+    @Test
+    public void positionsComeBackTheSame() {
+        ByteBuffer buffer = ByteBuffer.allocate(POSITIONS.length * Chessboard.ENCODED_SIZE);
+        Chessboard c = new Chessboard();
+        for (String fen : POSITIONS) {
+            c.setPosition(fen);
+            int before = buffer.position();
+            c.encode(buffer);
+            assertEquals(Chessboard.ENCODED_SIZE, buffer.position() - before);
+        }
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        Chessboard decoded = new Chessboard();
+        Chessboard parsed = new Chessboard();
+        for (String fen : POSITIONS) {
+            decoded.decode(buffer);
+            parsed.setPosition(fen);
+            assertEquals(fen, decoded.toFEN());
+            assertEquals(parsed.getPositionKey(), decoded.getPositionKey());
+            assertEquals(parsed.getMaterialKey(), decoded.getMaterialKey());
+            assertEquals(parsed.getLegalMoves().size(), decoded.getLegalMoves().size());
+        }
+    }
+
+    @Test
+    public void corruptedPositionsAreSkipped() {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Chessboard.ENCODED_SIZE);
+        Chessboard c = new Chessboard();
+        c.setPosition(POSITIONS[0]);
+        c.encode(buffer);
+        c.encode(buffer);
+        buffer.put(8, (byte) 0xF0); // unknown code of the piece on a1
+
+        buffer.flip();
+        assertThrows(InvalidEncodingException.class, () -> c.decode(buffer));
+        assertEquals("8/8/8/8/8/8/8/8 w - - 0 1", c.toFEN());
+        c.decode(buffer);
+        assertEquals(POSITIONS[0], c.toFEN());
+    }
+
+}
@@ -0,0 +1,73 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GivesCheck {
+
+    private static boolean givesCheck(String fen, String from, String to) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        String before = c.toFEN();
+        boolean check = c.givesCheck(c.findMove(new Location(from), new Location(to)));
+        assertEquals(before, c.toFEN());
+        return check;
+    }
+
+    // every move is checked against the position it leads to
+    private static void sameAsPlaying(Chessboard c, int depth) {
+        MoveBuffer legal = c.getLegalMoves();
+        int[] moves = new int[legal.size()];
+        for (int i = 0; i < moves.length; i++) moves[i] = legal.get(i);
+        for (int move : moves) {
+            boolean expected = c.givesCheck(move);
+            c.makeMove(move);
+            assertEquals(expected, c.getKing(c.getTurn()).isUnderCheck(c), Move.toString(move) + " in " + c.toFEN());
+            if (depth > 1) sameAsPlaying(c, depth - 1);
+            c.unmakeMove();
+        }
+    }
+
+    @Test
+    public void directChecks() {
+        assertTrue(givesCheck("4k3/8/8/8/8/8/8/R3K3 w - - 0 1", "A1", "A8"));
+        assertFalse(givesCheck("4k3/8/8/8/8/8/8/R3K3 w - - 0 1", "A1", "A7"));
+        assertFalse(givesCheck("4k3/8/8/8/8/8/8/1N2K3 w - - 0 1", "B1", "D2"));
+        assertTrue(givesCheck("4k3/8/8/3N4/8/8/8/4K3 w - - 0 1", "D5", "F6"));
+        assertTrue(givesCheck("4k3/8/3P4/8/8/8/8/4K3 w - - 0 1", "D6", "D7"));
+        // the pawn promotes to a queen that sees the king
+        assertTrue(givesCheck("8/3P4/5k2/8/8/8/8/4K3 w - - 0 1", "D7", "D8"));
+    }
+
+    @Test
+    public void discoveredChecks() {
+        // the bishop uncovers the rook
+        assertTrue(givesCheck("4k3/8/8/8/8/8/4B3/4RK2 w - - 0 1", "E2", "D3"));
+        // en passant clears the row between the rook and the king
+        assertTrue(givesCheck("8/8/8/k2pP2R/8/8/8/4K3 w - d6 0 1", "E5", "D6"));
+        // the rook that castles gives check
+        assertTrue(givesCheck("5k2/8/8/8/8/8/8/4K2R w K - 0 1", "E1", "G1"));
+        assertFalse(givesCheck("3k4/8/8/8/8/8/8/4K2R w K - 0 1", "E1", "G1"));
+    }
+
+    @Test
+    public void sameAsPlayingTheMoves() {
+        String[] positions = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        };
+        for (String fen : positions) {
+            Chessboard c = new Chessboard();
+            c.setPosition(fen);
+            sameAsPlaying(c, 3);
+        }
+    }
+
+}
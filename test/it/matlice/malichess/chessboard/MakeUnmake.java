@@ -0,0 +1,124 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MakeUnmake {
+
+    private static void makeAndUnmake(String fen, String from, String to) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        String before = c.toFEN();
+        Location src = new Location(from);
+        Location dest = new Location(to);
+
+        c.makeMove(c.findMove(src, dest));
+        assertNotEquals(before, c.toFEN());
+        c.unmakeMove();
+        assertEquals(before, c.toFEN());
+    }
+
+    @Test
+    public void quietMove() {
+        makeAndUnmake("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", "G1", "F3");
+        makeAndUnmake("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", "E2", "E4");
+    }
+
+    @Test
+    public void capture() {
+        makeAndUnmake("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2", "E4", "D5");
+    }
+
+    @Test
+    public void enPassant() {
+        makeAndUnmake("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", "E5", "F6");
+    }
+
+    @Test
+    public void castling() {
+        makeAndUnmake("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "E1", "G1");
+        makeAndUnmake("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", "E1", "C1");
+        makeAndUnmake("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", "E8", "C8");
+    }
+
+    @Test
+    public void promotion() {
+        makeAndUnmake("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "A7", "A8");
+        makeAndUnmake("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "A7", "B8");
+    }
+
+    @Test
+    public void takeBackPlayedMoves() {
+        Chessboard c = Chessboard.getDefault();
+        String start = c.toFEN();
+        c.move("E2", "E4");
+        c.move("D7", "D5");
+        Piece captured = c.move("E4", "D5");
+        assertEquals("Pawn", captured.getName());
+
+        c.unmakeMove();
+        c.unmakeMove();
+        c.unmakeMove();
+        assertEquals(start, c.toFEN());
+        assertDoesNotThrow(() -> c.move("E2", "E4"));
+    }
+
+    private static void assertPieceListsMatchBitboards(Chessboard c) {
+        for (PieceColor color : PieceColor.values())
+            for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+                long squares = 0L;
+                for (int i = 0; i < c.getPieceCount(color, type); i++)
+                    squares |= 1L << c.getPieceSquare(color, type, i);
+                assertEquals(c.getBitboard(color, type), squares);
+                assertEquals(Long.bitCount(squares), c.getPieceCount(color, type));
+            }
+    }
+
+    @Test
+    public void pieceListsFollowMoves() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        assertEquals(4, c.getKingSquare(PieceColor.WHITE));
+        assertEquals(60, c.getKingSquare(PieceColor.BLACK));
+
+        String[][] moves = {{"E5", "D6"}, {"A8", "A1"}, {"E1", "D2"}, {"E8", "G8"}, {"B7", "B8"}};
+        for (String[] m : moves) {
+            c.move(m[0], m[1]);
+            assertPieceListsMatchBitboards(c);
+        }
+        assertEquals(1, c.getPieceCount(PieceColor.WHITE, Piece.QUEEN));
+        assertEquals(1, c.getPieceCount(PieceColor.WHITE, Piece.PAWN));
+        assertEquals(62, c.getKingSquare(PieceColor.BLACK));
+
+        for (int i = 0; i < moves.length; i++) {
+            c.unmakeMove();
+            assertPieceListsMatchBitboards(c);
+        }
+        assertEquals(2, c.getPieceCount(PieceColor.WHITE, Piece.PAWN));
+    }
+
+    @Test
+    public void cloneKeepsTheHistory() {
+        Chessboard c = new Chessboard();
+        c.setPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        String start = c.toFEN();
+        c.move("G1", "F3");
+        c.move("G8", "F6");
+        c.move("F3", "G1");
+        c.move("F6", "G8");
+
+        Chessboard cloned = c.clone();
+        assertTrue(cloned.isRepetition());
+        assertArrayEquals(c.getPositionHistory(), cloned.getPositionHistory());
+        for (int i = 0; i < 4; i++) cloned.unmakeMove();
+        assertEquals(start, cloned.toFEN());
+        // the original is not changed by the clone
+        assertTrue(c.isRepetition());
+    }
+
+}
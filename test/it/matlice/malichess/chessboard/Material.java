@@ -0,0 +1,78 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Material {
+
+    private static Chessboard board(String fen) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        return c;
+    }
+
+    @Test
+    public void materialKeyFollowsCapturesAndPromotions() {
+        Chessboard c = board("4k3/1P6/8/8/8/8/8/4K2r w - - 0 1");
+        long start = Chessboard.materialKey(PieceColor.WHITE, Piece.KING, 1) | Chessboard.materialKey(PieceColor.WHITE, Piece.PAWN, 1)
+                | Chessboard.materialKey(PieceColor.BLACK, Piece.KING, 1) | Chessboard.materialKey(PieceColor.BLACK, Piece.ROOK, 1);
+        assertEquals(start, c.getMaterialKey());
+
+        c.move("E1", "D2");
+        c.move("H1", "H3");
+        c.move("B7", "B8");
+        assertEquals(1, c.getPieceCount(PieceColor.WHITE, Piece.QUEEN));
+        assertEquals(0, c.getPieceCount(PieceColor.WHITE, Piece.PAWN));
+        assertEquals(start - Chessboard.materialKey(PieceColor.WHITE, Piece.PAWN, 1) + Chessboard.materialKey(PieceColor.WHITE, Piece.QUEEN, 1),
+                c.getMaterialKey());
+
+        c.unmakeMove();
+        assertEquals(start, c.getMaterialKey());
+        assertEquals(start, c.clone().getMaterialKey());
+    }
+
+    @Test
+    public void insufficientMaterialIsADraw() {
+        assertEquals(GameState.DRAW, board("4k3/8/8/8/8/8/8/4K3 w - - 0 1").getGameState());
+        assertEquals(GameState.DRAW, board("4k3/8/8/8/8/8/8/2B1K3 w - - 0 1").getGameState());
+        assertEquals(GameState.DRAW, board("4k3/8/8/8/8/8/8/1N2K3 b - - 0 1").getGameState());
+        // bishops on squares of the same color can never mate
+        assertEquals(GameState.DRAW, board("4kb2/8/8/8/8/8/8/2B1K3 w - - 0 1").getGameState());
+
+        assertEquals(GameState.PLAYING, board("2b1k3/8/8/8/8/8/8/2B1K3 w - - 0 1").getGameState());
+        assertEquals(GameState.PLAYING, board("4k3/8/8/8/8/8/8/1NN1K3 w - - 0 1").getGameState());
+        assertEquals(GameState.PLAYING, board("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").getGameState());
+        assertEquals(GameState.PLAYING, board("4k3/8/8/8/8/8/8/R3K3 w - - 0 1").getGameState());
+    }
+
+    @Test
+    public void searchDrawsWhenTheGameIsDrawn() {
+        String[] positions = {
+                "4k3/8/8/8/8/8/8/R3K3 w - - 99 80",
+                "4k3/8/8/8/8/8/8/R3K3 w - - 100 80",
+                "4k3/8/8/8/8/8/8/R3K3 w - - 120 90",
+                "4k3/8/8/8/8/8/8/4K3 w - - 0 1",
+                "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1",
+        };
+        for (String fen : positions) {
+            Chessboard c = board(fen);
+            assertEquals(c.getGameState() == GameState.DRAW, c.isDrawInSearch(), fen);
+        }
+        assertFalse(board("4k3/8/8/8/8/8/8/R3K3 w - - 99 80").isDrawInSearch());
+        assertTrue(board("4k3/8/8/8/8/8/8/R3K3 w - - 100 80").isDrawInSearch());
+    }
+
+    @Test
+    public void mateBeatsTheHalfMoveClock() {
+        Chessboard c = board("6k1/5ppp/8/8/8/8/8/R5K1 w - - 99 80");
+        c.move("A1", "A8");
+        assertEquals(100, c.getHalfMoveClock());
+        assertEquals(GameState.WHITE_WIN, c.getGameState());
+    }
+
+}
@@ -0,0 +1,45 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Bitboard;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import it.matlice.matlichess.model.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveEncoding {
+
+    @Test
+    public void fieldsRoundTrip() {
+        int move = Move.promotion(Bitboard.square(4, 6), Bitboard.square(3, 7), Piece.KNIGHT, Move.CAPTURE);
+        assertEquals(Bitboard.square(4, 6), Move.from(move));
+        assertEquals(Bitboard.square(3, 7), Move.to(move));
+        assertEquals(Piece.KNIGHT, Move.promotion(move));
+        assertTrue(Move.isPromotion(move));
+        assertTrue(Move.isCapture(move));
+        assertFalse(Move.isCastling(move));
+        assertEquals("e7d8n", Move.toString(move));
+    }
+
+    @Test
+    public void generatedMovesCarryTheirFlags() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/8/8/3pP3/8/8/P7/R3K2R w KQkq d6 0 1");
+
+        int castling = c.findMove(new Location("E1"), new Location("G1"));
+        assertTrue(Move.isCastling(castling));
+        assertTrue(Move.isEnPassant(c.findMove(new Location("E5"), new Location("D6"))));
+        assertTrue(Move.isDoublePush(c.findMove(new Location("A2"), new Location("A4"))));
+        assertTrue(Move.isCapture(c.findMove(new Location("H1"), new Location("H8"))));
+        assertEquals(Move.NONE, c.findMove(new Location("A1"), new Location("B2")));
+
+        MoveBuffer moves = new MoveBuffer();
+        c.getAvailableMoves(moves);
+        // 2 pawn moves for a2, 2 for e5, 3 + 9 for the rooks, 5 king moves and 2 castlings
+        assertEquals(23, moves.size());
+    }
+
+}
@@ -0,0 +1,38 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Perft;
+import org.junit.jupiter.api.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftCounts {
+
+    private static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+    private static final String POSITION_6 = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+
+    @Test
+    public void knownCounts() {
+        Perft perft = new Perft(2, 0);
+        assertEquals(62379, perft.count(POSITION_5, 3));
+        assertEquals(89890, perft.count(POSITION_6, 3));
+    }
+
+    @Test
+    public void cachedCountsAreTheSame() {
+        Perft perft = new Perft(4, 8);
+        assertEquals(2103487, perft.count(POSITION_5, 4));
+        assertEquals(2103487, perft.count(POSITION_5, 4));
+    }
+
+    @Test
+    public void divideByRootMove() {
+        TreeMap<String, Long> counts = new Perft(1, 0).divide(POSITION_5, 2);
+        assertEquals(44, counts.size());
+        assertEquals(1486, counts.values().stream().mapToLong(Long::longValue).sum());
+        // the promotions of the pawn on d7 are told apart
+        assertTrue(counts.containsKey("d7c8q") && counts.containsKey("d7c8n"));
+    }
+
+}
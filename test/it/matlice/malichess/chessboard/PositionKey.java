@@ -0,0 +1,71 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.model.Chessboard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionKey {
+
+    private static long keyOf(String fen) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        return c.getPositionKey();
+    }
+
+    @Test
+    public void incrementalKeyMatchesFEN() {
+        Chessboard c = Chessboard.getDefault();
+        String[][] moves = {{"E2", "E4"}, {"D7", "D5"}, {"E4", "D5"}, {"G8", "F6"}, {"F1", "B5"}, {"C7", "C6"},
+                {"G1", "F3"}, {"C6", "B5"}, {"E1", "G1"}, {"D8", "D5"}};
+        for (String[] m : moves) {
+            c.move(m[0], m[1]);
+            assertEquals(keyOf(c.toFEN()), c.getPositionKey());
+        }
+    }
+
+    @Test
+    public void keyDependsOnTurnAndEnPassant() {
+        assertNotEquals(keyOf("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), keyOf("4k3/8/8/8/8/8/8/4K3 b - - 0 1"));
+        assertNotEquals(keyOf("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1"), keyOf("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1"));
+        assertEquals(keyOf("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), keyOf("4k3/8/8/8/8/8/8/4K3 w - - 12 40"));
+    }
+
+    @Test
+    public void unmakeRestoresKey() {
+        Chessboard c = Chessboard.getDefault();
+        long start = c.getPositionKey();
+        c.move("E2", "E4");
+        c.move("E7", "E5");
+        c.unmakeMove();
+        c.unmakeMove();
+        assertEquals(start, c.getPositionKey());
+    }
+
+    @Test
+    public void threefoldRepetition() {
+        Chessboard c = Chessboard.getDefault();
+        for (int i = 0; i < 2; i++) {
+            c.move("G1", "F3");
+            c.move("G8", "F6");
+            c.move("F3", "G1");
+            assertEquals(GameState.PLAYING, c.getGameState());
+            c.move("F6", "G8");
+        }
+        // the starting position has now been reached three times
+        assertEquals(GameState.DRAW, c.getGameState());
+    }
+
+    @Test
+    public void historyIsCutAtIrreversibleMoves() {
+        Chessboard c = Chessboard.getDefault();
+        c.move("G1", "F3");
+        c.move("G8", "F6");
+        assertEquals(3, c.getPositionHistory().length);
+        c.move("E2", "E4");
+        assertEquals(1, c.getPositionHistory().length);
+        assertEquals(c.getPositionKey(), c.getPositionHistory()[0]);
+    }
+
+}
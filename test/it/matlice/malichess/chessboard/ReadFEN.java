@@ -0,0 +1,92 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.model.Chessboard;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadFEN {
+
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 12 45",
+    };
+
+    private static int errorPosition(String fen) {
+        Chessboard c = new Chessboard();
+        InvalidFenException e = assertThrows(InvalidFenException.class, () -> c.setPosition(fen));
+        // the chessboard is not left half filled
+        assertEquals("8/8/8/8/8/8/8/8 w - - 0 1", c.toFEN());
+        return e.getPosition();
+    }
+
+    @Test
+    public void readAndWriteBack() {
+        Chessboard c = new Chessboard();
+        for (String fen : POSITIONS) {
+            c.setPosition(fen);
+            assertEquals(fen, c.toFEN());
+            c.setPosition(new StringBuilder(fen));
+            assertEquals(fen, c.toFEN());
+        }
+    }
+
+    @Test
+    public void castlingAndClocks() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 7 20");
+        assertEquals(Chessboard.WHITE_KING_SIDE | Chessboard.BLACK_QUEEN_SIDE, c.getCastlingRights());
+        assertEquals(PieceColor.BLACK, c.getTurn());
+        assertTrue(c.toFEN().endsWith(" 7 20"));
+
+        // the clocks can be missing
+        c.setPosition("r3k2r/8/8/8/8/8/8/R3K2R w - -");
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w - - 0 1", c.toFEN());
+    }
+
+    @Test
+    public void errorsTellWhere() {
+        assertEquals(7, errorPosition("rnbqkbnx/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertEquals(12, errorPosition("rnbqkbnr/ppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+        assertEquals(43, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR/8 w KQkq - 0 1"));
+        assertEquals(44, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1"));
+        assertEquals(49, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkx - 0 1"));
+        assertEquals(52, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1"));
+        // the en passant square is behind the pawn of the player who has just moved
+        assertEquals(54, errorPosition("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1"));
+        assertEquals(54, errorPosition("rnbqkbnr/pppp1ppp/8/4p3/8/8/PPPPPPPP/RNBQKBNR b KQkq e6 0 1"));
+        assertEquals(53, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - a 1"));
+        assertEquals(45, errorPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w"));
+    }
+
+    @Test
+    public void manyThreadsAtOnce() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                Chessboard c = new Chessboard();
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        String fen = POSITIONS[i % POSITIONS.length];
+                        c.setPosition(fen);
+                        if (!fen.equals(c.toFEN())) throw new AssertionError(fen + " read as " + c.toFEN());
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertNull(failure.get());
+    }
+
+}
@@ -0,0 +1,34 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.exceptions.ChessboardLocationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedLocations {
+
+    @Test
+    public void parsedLocationsAreShared() {
+        assertSame(Location.of(3, 5), Location.of("d6"));
+        assertSame(Location.of(3, 5), Location.of("D6"));
+        assertSame(Location.of(0), Location.of("A1"));
+        assertSame(Location.of(63), Location.of("h8"));
+
+        List<Location> move = Location.fromExtendedMove("e7e8n");
+        assertSame(Location.of("E7"), move.get(0));
+        assertSame(Location.of("E8"), move.get(1));
+    }
+
+    @Test
+    public void wrongLocations() {
+        assertThrows(ChessboardLocationException.class, () -> Location.of("i1"));
+        assertThrows(ChessboardLocationException.class, () -> Location.of("a9"));
+        assertThrows(ChessboardLocationException.class, () -> Location.of("a0"));
+        assertThrows(ChessboardLocationException.class, () -> Location.of("a10"));
+        assertThrows(ChessboardLocationException.class, () -> Location.of("a"));
+    }
+
+}
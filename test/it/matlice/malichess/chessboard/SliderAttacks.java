@@ -0,0 +1,49 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.model.Bitboard;
+import it.matlice.matlichess.model.MagicAttacks;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SliderAttacks {
+
+    private static long walk(int square, long occupancy, int[][] directions) {
+        long attacks = 0L;
+        for (int[] d : directions) {
+            for (int col = Bitboard.col(square) + d[0], row = Bitboard.row(square) + d[1];
+                 Bitboard.bit(col, row) != 0; col += d[0], row += d[1]) {
+                attacks |= Bitboard.bit(col, row);
+                if ((occupancy & Bitboard.bit(col, row)) != 0) break;
+            }
+        }
+        return attacks;
+    }
+
+    @Test
+    public void lookupsMatchRayWalk() {
+        int[][] straight = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+        int[][] diagonal = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+        Random r = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            long occupancy = r.nextLong() & r.nextLong();
+            for (int sq = 0; sq < 64; sq++) {
+                assertEquals(walk(sq, occupancy, straight), MagicAttacks.rookAttacks(sq, occupancy));
+                assertEquals(walk(sq, occupancy, diagonal), MagicAttacks.bishopAttacks(sq, occupancy));
+            }
+        }
+    }
+
+    @Test
+    public void rowAndColumnAreSplit() {
+        // slider on D2, blockers on D4 and G2
+        int square = Bitboard.square(3, 1);
+        long occupancy = Bitboard.bit(3, 3) | Bitboard.bit(6, 1);
+        assertEquals(Bitboard.bit(3, 0) | Bitboard.bit(3, 2) | Bitboard.bit(3, 3), Bitboard.columnAttacks(square, occupancy));
+        assertEquals(Bitboard.bit(0, 1) | Bitboard.bit(1, 1) | Bitboard.bit(2, 1) | Bitboard.bit(4, 1) | Bitboard.bit(5, 1)
+                | Bitboard.bit(6, 1), Bitboard.rowAttacks(square, occupancy));
+    }
+
+}
@@ -0,0 +1,45 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.PositionSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Snapshot {
+
+    @Test
+    public void snapshotDoesNotFollowTheChessboard() {
+        Chessboard c = Chessboard.getDefault();
+        PositionSnapshot before = new PositionSnapshot(c);
+        c.move("E2", "E4");
+        PositionSnapshot after = new PositionSnapshot(c);
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", before.getFen(true));
+        assertEquals(PieceColor.WHITE, before.getTurn());
+        assertEquals(20, before.getLegalMoveCount());
+        assertTrue(before.isMoveValid(new Location("E2"), new Location("E4")));
+        assertFalse(before.isMoveValid(new Location("E7"), new Location("E5")));
+
+        assertEquals(c.toFEN(false), after.getFen(false));
+        assertEquals(PieceColor.BLACK, after.getTurn());
+        assertEquals(GameState.PLAYING, after.getGameState());
+        assertEquals(c.getPositionKey(), after.getPositionKey());
+        assertTrue(after.isMoveValid(new Location("E7"), new Location("E5")));
+    }
+
+    @Test
+    public void destinationsAndPromotions() {
+        Chessboard c = new Chessboard();
+        c.setPosition("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        PositionSnapshot s = new PositionSnapshot(c);
+        assertEquals(1, Long.bitCount(s.getDestinations(new Location("B7"))));
+        assertTrue(s.isPromoting(new Location("B7"), new Location("B8")));
+        assertFalse(s.isPromoting(new Location("E1"), new Location("E2")));
+        assertEquals(0L, s.getDestinations(new Location("E8")));
+    }
+
+}
@@ -0,0 +1,103 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveIterator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StagedMoves {
+
+    private static long perft(Chessboard c, MoveIterator[] iterators, int depth) {
+        if (depth == 0) return 1;
+        MoveIterator it = iterators[depth].reset();
+        long nodes = 0;
+        for (int move = it.next(); move != Move.NONE; move = it.next()) {
+            c.makeMove(move);
+            nodes += perft(c, iterators, depth - 1);
+            c.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private static long perft(String fen, int depth) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        MoveIterator[] iterators = new MoveIterator[depth + 1];
+        for (int i = 1; i <= depth; i++) iterators[i] = c.moveIterator();
+        return perft(c, iterators, depth);
+    }
+
+    @Test
+    public void sameMovesOfTheGenerator() {
+        assertEquals(8902, perft("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 3));
+        assertEquals(97862, perft("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3));
+        assertEquals(9467, perft("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 3));
+    }
+
+    @Test
+    public void capturesComeFirst() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        MoveIterator it = c.moveIterator();
+
+        int first = it.next();
+        assertTrue(Move.isCapture(first));
+        assertEquals("e2a6", Move.toString(first)); // the bishop takes the other bishop before the pawns take anything
+
+        boolean quiet = false;
+        int count = 1;
+        for (int move = it.next(); move != Move.NONE; move = it.next(), count++) {
+            boolean tactical = Move.isCapture(move) || Move.isEnPassant(move) || Move.isPromotion(move);
+            if (!tactical) quiet = true;
+            else assertFalse(quiet);
+            assertEquals(tactical, it.isCaptureStage());
+        }
+        assertTrue(quiet);
+        assertEquals(c.getLegalMoves().size(), count);
+    }
+
+    private static int countDistinct(MoveIterator it, int first) {
+        Set<Integer> seen = new HashSet<>();
+        assertEquals(first, it.next());
+        seen.add(first);
+        for (int move = it.next(); move != Move.NONE; move = it.next()) assertTrue(seen.add(move));
+        return seen.size();
+    }
+
+    @Test
+    public void firstMoveBeforeTheOthers() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        MoveIterator it = c.moveIterator();
+        int legal = c.getLegalMoves().size();
+
+        int castling = c.findMove(4, 6);
+        assertEquals(legal, countDistinct(it.reset(castling), castling));
+        int capture = c.findMove(35, 44); // d5 takes e6
+        assertEquals(legal, countDistinct(it.reset(capture), capture));
+
+        // moves that are not legal, or whose flags are wrong, are not returned
+        int best = it.reset().next();
+        assertEquals(best, it.reset(Move.of(4, 5, Move.DOUBLE_PUSH)).next());
+        assertEquals(best, it.reset(Move.of(12, 28, 0)).next());
+        assertEquals(best, it.reset(Move.of(8, 24, 0)).next());
+    }
+
+    @Test
+    public void onlyCapturesWhenAsked() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        MoveIterator it = c.moveIterator();
+        int count = 0;
+        for (int move = it.nextCapture(); move != Move.NONE; move = it.nextCapture(), count++)
+            assertTrue(Move.isCapture(move) || Move.isEnPassant(move) || Move.isPromotion(move));
+        assertEquals(8, count);
+        assertTrue(it.isCaptureStage());
+    }
+
+}
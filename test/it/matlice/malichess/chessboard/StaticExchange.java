@@ -0,0 +1,58 @@
+package it.matlice.malichess.chessboard;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Chessboard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaticExchange {
+
+    private static int see(String fen, String from, String to) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        String before = c.toFEN();
+        int value = c.staticExchange(c.findMove(new Location(from), new Location(to)));
+        assertEquals(before, c.toFEN());
+        return value;
+    }
+
+    @Test
+    public void freeAndDefendedPieces() {
+        // a knight left alone, then the same knight defended by a pawn
+        assertEquals(3, see("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1", "D1", "D5"));
+        assertEquals(-2, see("4k3/8/4p3/3n4/8/8/8/3RK3 w - - 0 1", "D1", "D5"));
+        // the queen takes a pawn defended by a pawn
+        assertEquals(-8, see("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", "D1", "D5"));
+        // a pawn takes the knight and loses only itself
+        assertEquals(2, see("4k3/8/4p3/3n4/4P3/8/8/4K3 w - - 0 1", "E4", "D5"));
+    }
+
+    @Test
+    public void xRays() {
+        // the rook behind joins the exchange once the first one has taken
+        assertEquals(-4, see("4r1k1/8/8/4p3/8/8/4R3/6K1 w - - 0 1", "E2", "E5"));
+        assertEquals(1, see("4r1k1/8/8/4p3/8/8/4R3/4R1K1 w - - 0 1", "E2", "E5"));
+        // the black queen behind the rook defends as well
+        assertEquals(-4, see("4q1k1/4r3/8/4p3/8/8/4R3/4R1K1 w - - 0 1", "E2", "E5"));
+    }
+
+    @Test
+    public void kingsTakeOnlyUndefendedPieces() {
+        assertEquals(1, see("4k3/8/8/8/8/8/3p4/4K3 w - - 0 1", "E1", "D2"));
+        assertEquals(-4, see("8/8/4k3/3p4/8/8/8/3RK3 w - - 0 1", "D1", "D5"));
+        // the king can't take back a rook defended by the other one
+        assertEquals(1, see("8/8/4k3/3p4/8/8/3R4/3RK3 w - - 0 1", "D2", "D5"));
+    }
+
+    @Test
+    public void specialMoves() {
+        assertEquals(1, see("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "E5", "D6"));
+        // quiet moves, onto a safe square and onto a square attacked by a pawn
+        assertEquals(0, see("4k3/8/8/8/8/8/8/1N2K3 w - - 0 1", "B1", "C3"));
+        assertEquals(-3, see("4k3/8/8/8/3p4/8/8/1N2K3 w - - 0 1", "B1", "C3"));
+        // a promotion that can't be taken back
+        assertEquals(8, see("4k3/P7/8/8/8/8/8/4K3 w - - 0 1", "A7", "A8"));
+    }
+
+}
@@ -68,4 +68,23 @@ public class ToFEN {
         assertEquals("rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2", c.toFEN());
     }
 
+    @org.junit.jupiter.api.Test
+    public void fenKeptUntilThePositionChanges(){
+        setupStartingPosition();
+        String start = c.toFEN();
+        assertSame(start, c.toFEN());
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -", c.toFEN(false));
+
+        c.move(new Location("E2"), new Location("E4"));
+        String afterMove = c.toFEN();
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", afterMove);
+        c.unmakeMove();
+        assertEquals(start, c.toFEN());
+
+        // a change of the clocks alone is seen as well
+        c.setHalfMoveClock(12);
+        c.setFullMoveNumber(107);
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 12 107", c.toFEN());
+    }
+
 }
\ No newline at end of file
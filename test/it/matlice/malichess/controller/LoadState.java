@@ -0,0 +1,80 @@
+package it.matlice.malichess.controller;
+
+import it.matlice.matlichess.GameState;
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.controller.Game;
+import it.matlice.matlichess.controller.PlayerInterface;
+import it.matlice.matlichess.controller.net.PositionInit;
+import it.matlice.matlichess.exceptions.InvalidFenException;
+import it.matlice.matlichess.view.PieceView;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadState {
+
+    private static class ScriptedPlayer implements PlayerInterface {
+        private String move;
+
+        @Override
+        public String waitForUserMove() {
+            String m = move;
+            move = null;
+            return m;
+        }
+
+        @Override
+        public void setColor(PieceColor color) {
+        }
+
+        @Override
+        public void setPosition(ArrayList<PieceView> pieces) {
+        }
+
+        @Override
+        public void setMove(String move) {
+        }
+
+        @Override
+        public void setTurn(PieceColor turn) {
+        }
+
+        @Override
+        public void interrupt() {
+        }
+
+        @Override
+        public boolean setState(GameState state, boolean generic, PlayerInterface opponent) {
+            return false;
+        }
+
+        @Override
+        public boolean setState(GameState state, boolean generic, Boolean other_result) {
+            return false;
+        }
+    }
+
+    @Test
+    public void wrongFenKeepsThePosition() {
+        ScriptedPlayer black = new ScriptedPlayer();
+        Game game = Game.getInstance(new ScriptedPlayer(), black);
+        game.reinitialize("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", false);
+        String before = game.getPositionFen();
+
+        PositionInit wrong = new PositionInit("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                game.getPositions(), PieceColor.WHITE);
+
+        assertThrows(InvalidFenException.class, () -> game.loadState(wrong));
+        assertEquals(before, game.getPositionFen());
+        assertEquals(PieceColor.BLACK, game.getSnapshot().getTurn());
+        // the game goes on from the kept position
+        assertTrue(game.isMoveValid(new Location("E7"), new Location("E5")));
+        black.move = "E7E5";
+        assertTrue(game.mainloop());
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2", game.getPositionFen());
+    }
+
+}
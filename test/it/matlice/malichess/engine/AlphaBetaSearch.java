@@ -0,0 +1,118 @@
+package it.matlice.malichess.engine;
+
+import it.matlice.matlichess.engine.Search;
+import it.matlice.matlichess.engine.TranspositionTable;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlphaBetaSearch {
+
+    private static String bestMove(int threads, String fen, int depth) {
+        Search search = new Search(threads, 16);
+        try {
+            return Move.toString(search.search(fen, null, depth, 0));
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void tableEntries() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.promotion(52, 60, 4, Move.PROMOTION | Move.CAPTURE);
+        table.store(0x123456789ABCDEFL, move, -29990, 17, TranspositionTable.LOWER);
+
+        long entry = table.probe(0x123456789ABCDEFL);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-29990, TranspositionTable.score(entry));
+        assertEquals(17, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        // the same bucket, another key
+        assertEquals(0L, table.probe(0x123456789ABCDEFL ^ (1L << 40)));
+        table.clear();
+        assertEquals(0L, table.probe(0x123456789ABCDEFL));
+    }
+
+    @Test
+    public void findsTheMate() {
+        for (int threads : new int[]{1, 4}) {
+            assertEquals("a1a8", bestMove(threads, "6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1", 4));
+            // the queen sacrifice before the smothered mate
+            assertEquals("d5g8", bestMove(threads, "5r1k/6pp/7N/3Q4/8/8/5PPP/6K1 w - - 0 1", 5));
+        }
+        Search search = new Search(2, 16);
+        search.search("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1", null, 10, 0);
+        assertEquals(Search.MATE - 1, search.getScore());
+        search.shutdown();
+    }
+
+    @Test
+    public void takesWhatIsLeft() {
+        assertEquals("d2d5", bestMove(1, "4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1", 3));
+        // the queen is defended, taking it with the rook is still worth it
+        assertEquals("d2d5", bestMove(2, "4k3/8/4p3/3q4/8/8/3R4/4K3 w - - 0 1", 3));
+        // the pawn is defended, taking it loses the queen
+        assertNotEquals("d1d5", bestMove(2, "4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", 4));
+    }
+
+    @Test
+    public void noMoveWhenTheGameIsOver() {
+        assertEquals(Move.NONE, new Search(1, 1).search("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", null, 5, 0));
+        assertEquals(Move.NONE, new Search(1, 1).search("R5k1/5ppp/8/8/8/8/5PPP/6K1 b - - 0 1", null, 5, 0));
+    }
+
+    @Test
+    public void stopsWhenAsked() throws InterruptedException {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        Search search = new Search(2, 16);
+        AtomicBoolean done = new AtomicBoolean();
+        // without a time limit only stop ends the search; it is called until the search is over, so that a call made
+        // before the search starts is not lost
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+                while (!done.get()) {
+                    search.stop();
+                    Thread.sleep(50);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        stopper.start();
+        long start = System.nanoTime();
+        int move = search.search(fen, null, Search.MAX_PLY - 1, 0);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        done.set(true);
+        stopper.join();
+        search.shutdown();
+
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        assertEquals(move, c.getLegalMoves().find(Move.from(move), Move.to(move), Move.promotion(move)));
+        assertTrue(search.getDepth() >= 1);
+        assertTrue(elapsed < 10000, "searched for " + elapsed + " ms");
+    }
+
+    @Test
+    public void stopRequestedBeforeTheSearch() {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        Search search = new Search(2, 16);
+        long start = System.nanoTime();
+        int move = search.search(fen, null, Search.MAX_PLY - 1, 0, () -> true);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        search.shutdown();
+
+        // no iteration is searched, but a legal move is still returned
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        assertEquals(move, c.getLegalMoves().find(Move.from(move), Move.to(move), Move.promotion(move)));
+        assertEquals(0, search.getDepth());
+        assertTrue(elapsed < 10000, "searched for " + elapsed + " ms");
+    }
+
+}
@@ -0,0 +1,97 @@
+package it.matlice.malichess.engine;
+
+import it.matlice.matlichess.engine.MonteCarloTree;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonteCarloSearch {
+
+    // the playouts are random, a fixed seed makes every failure happen again
+    private static final long SEED = 20220617L;
+
+    private static String bestMove(int threads, String fen, int playouts) {
+        MonteCarloTree tree = new MonteCarloTree(threads, 1_000_000, SEED);
+        try {
+            return Move.toString(tree.search(fen, null, playouts, 0));
+        } finally {
+            tree.shutdown();
+        }
+    }
+
+    @Test
+    public void findsTheMate() {
+        for (int threads : new int[]{1, 4})
+            assertEquals("a1a8", bestMove(threads, "6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1", 20000));
+    }
+
+    @Test
+    public void takesWhatIsLeft() {
+        assertEquals("d2d5", bestMove(2, "4k3/8/4p3/3q4/8/8/3R4/4K3 w - - 0 1", 20000));
+    }
+
+    @Test
+    public void noMoveWhenTheGameIsOver() {
+        MonteCarloTree tree = new MonteCarloTree(1, 1000, SEED);
+        assertEquals(Move.NONE, tree.search("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", null, 100, 0));
+        assertEquals(Move.NONE, tree.search("R5k1/5ppp/8/8/8/8/5PPP/6K1 b - - 0 1", null, 100, 0));
+    }
+
+    @Test
+    public void stopRequestedBeforeTheSearch() {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        MonteCarloTree tree = new MonteCarloTree(2, 10_000, SEED);
+        // without limits only the request of the caller ends the search
+        int move = tree.search(fen, null, 0, 0, () -> true);
+        tree.shutdown();
+
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        assertEquals(move, c.getLegalMoves().find(Move.from(move), Move.to(move), Move.promotion(move)));
+        assertEquals(0, tree.getRootVisits());
+    }
+
+    @Test
+    public void treeKeptAfterTheMove() {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        MonteCarloTree tree = new MonteCarloTree(4, 200_000, SEED);
+        int move = tree.search(fen, null, 5000, 0);
+        assertTrue(tree.getRootVisits() >= 5000);
+        int sizeBefore = tree.getSize();
+
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        c.makeMove(move);
+        tree.advance(move, c.getPositionKey());
+        int kept = tree.getRootVisits();
+        assertTrue(kept > 0);
+        assertTrue(tree.getSize() > 1 && tree.getSize() < sizeBefore);
+
+        // the search goes on from the visits of the kept subtree
+        int reply = tree.search(c.toFEN(), null, kept + 1000, 0);
+        assertTrue(tree.getRootVisits() >= kept + 1000);
+        assertEquals(reply, c.getLegalMoves().find(Move.from(reply), Move.to(reply), Move.promotion(reply)));
+
+        // a move that was not searched empties the tree
+        tree.advance(Move.NONE, 0);
+        assertEquals(0, tree.getSize());
+        tree.shutdown();
+    }
+
+    @Test
+    public void neverGrowsOverItsCapacity() {
+        MonteCarloTree tree = new MonteCarloTree(4, 500, SEED);
+        String fen = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+        int move = tree.search(fen, null, 20000, 0);
+        assertTrue(tree.getSize() <= 500);
+        assertTrue(tree.getRootVisits() >= 20000);
+
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        assertEquals(move, c.getLegalMoves().find(Move.from(move), Move.to(move), Move.promotion(move)));
+        tree.shutdown();
+    }
+
+}
@@ -4,6 +4,7 @@ import it.matlice.malichess.ChessboardTest;
 import it.matlice.matlichess.exceptions.InvalidMoveException;
 import it.matlice.matlichess.PieceColor;
 import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Chessboard;
 import it.matlice.matlichess.model.pieces.Bishop;
 import it.matlice.matlichess.model.pieces.King;
 import it.matlice.matlichess.model.pieces.Rook;
@@ -80,4 +81,25 @@ public class Castling {
 
     }
 
+    @Test
+    public void castlingRightsFromFEN() {
+        Chessboard c = new Chessboard();
+        c.setPosition("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1");
+
+        assertThrows(InvalidMoveException.class, () -> c.clone().move("E1", "C1"));
+        assertDoesNotThrow(() -> c.clone().move("E1", "G1"));
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1", c.toFEN());
+
+        // taking the rook on its starting square drops the right it granted
+        c.move("H1", "H8");
+        assertEquals("r3k2R/8/8/8/8/8/8/R3K3 b q - 0 1", c.toFEN());
+        c.unmakeMove();
+        assertEquals("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1", c.toFEN());
+
+        c.move("E1", "G1");
+        assertEquals("r3k2r/8/8/8/8/8/8/R4RK1 b q - 1 1", c.toFEN());
+        c.move("E8", "C8");
+        assertEquals("2kr3r/8/8/8/8/8/8/R4RK1 w - - 2 2", c.toFEN());
+    }
+
 }
@@ -0,0 +1,92 @@
+package it.matlice.malichess.movements;
+
+import it.matlice.matlichess.Location;
+import it.matlice.matlichess.model.Bitboard;
+import it.matlice.matlichess.model.Chessboard;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegalMoves {
+
+    private static Set<Location> movesOf(String fen, String square) {
+        Chessboard c = new Chessboard();
+        c.setPosition(fen);
+        MoveBuffer moves = c.getAvailableMoves(new Location(square));
+        Set<Location> destinations = new HashSet<>();
+        for (int i = 0; i < moves.size(); i++)
+            destinations.add(new Location(Bitboard.col(Move.to(moves.get(i))), Bitboard.row(Move.to(moves.get(i)))));
+        return destinations;
+    }
+
+    @Test
+    public void pinnedPieceMovesAlongThePin() {
+        // the bishop is pinned by the rook and cannot move at all
+        assertTrue(movesOf("4r1k1/8/8/8/8/8/4B3/4K3 w - - 0 1", "E2").isEmpty());
+        // the rook can move along the pin and capture the pinning piece
+        assertEquals(Set.of(new Location("E3"), new Location("E4"), new Location("E5"), new Location("E6"),
+                new Location("E7"), new Location("E8")), movesOf("4r1k1/8/8/8/8/8/4R3/4K3 w - - 0 1", "E2"));
+    }
+
+    @Test
+    public void checkMustBeStopped() {
+        // only the captures of the checking knight are allowed
+        assertEquals(Set.of(new Location("F3")), movesOf("4k3/8/8/8/8/5n2/8/3QK3 w - - 0 1", "D1"));
+        // with a double check only the king can move
+        assertTrue(movesOf("4k3/8/8/8/1b6/5n2/8/3QK3 w - - 0 1", "D1").isEmpty());
+    }
+
+    @Test
+    public void kingCannotStepAlongTheCheckingRay() {
+        Set<Location> moves = movesOf("4r1k1/8/8/8/8/8/8/4K3 w - - 0 1", "E1");
+        assertFalse(moves.contains(new Location("E2")));
+        assertTrue(moves.contains(new Location("D1")));
+    }
+
+    @Test
+    public void enPassantDiscoveringCheckOnTheRow() {
+        // capturing en passant would remove both pawns from the fifth row, leaving the king exposed to the rook
+        assertFalse(movesOf("8/8/8/K2pP2r/8/8/8/7k w - d6 0 1", "E5").contains(new Location("D6")));
+        assertTrue(movesOf("8/8/8/K2pP3/8/8/8/7k w - d6 0 1", "E5").contains(new Location("D6")));
+    }
+
+    @Test
+    public void castlingThroughAttackedSquare() {
+        assertFalse(movesOf("4k3/8/8/8/8/8/5r2/R3K2R w KQ - 0 1", "E1").contains(new Location("G1")));
+        assertTrue(movesOf("4k3/8/8/8/8/8/5r2/R3K2R w KQ - 0 1", "E1").contains(new Location("C1")));
+        assertTrue(movesOf("4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1", "E1").contains(new Location("G1")));
+    }
+
+    @Test
+    public void legalMovesAreCachedUntilTheBoardChanges() {
+        Chessboard c = Chessboard.getDefault();
+        MoveBuffer moves = c.getLegalMoves();
+        assertEquals(20, moves.size());
+        assertSame(moves, c.getLegalMoves());
+
+        c.move("E2", "E4");
+        assertEquals(20, c.getLegalMoves().size());
+        assertNotEquals(Move.NONE, c.findMove(new Location("E7"), new Location("E5")));
+
+        c.unmakeMove();
+        assertNotEquals(Move.NONE, c.getLegalMoves().find(Bitboard.square(6, 0), Bitboard.square(5, 2)));
+        assertEquals(Move.NONE, c.getLegalMoves().find(Bitboard.square(6, 7), Bitboard.square(5, 5)));
+    }
+
+    @Test
+    public void cachedMovesCantBeChanged() {
+        Chessboard c = Chessboard.getDefault();
+        MoveBuffer moves = c.getLegalMoves();
+        assertThrows(UnsupportedOperationException.class, moves::clear);
+        assertThrows(UnsupportedOperationException.class, () -> moves.add(Move.NONE));
+        assertThrows(UnsupportedOperationException.class, () -> moves.set(0, Move.NONE));
+        assertThrows(UnsupportedOperationException.class, () -> moves.truncate(0));
+        assertEquals(20, c.getLegalMoves().size());
+    }
+
+}
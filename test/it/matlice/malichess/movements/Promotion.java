@@ -3,6 +3,9 @@ package it.matlice.malichess.movements;
 import it.matlice.malichess.ChessboardTest;
 import it.matlice.matlichess.Location;
 import it.matlice.matlichess.PieceColor;
+import it.matlice.matlichess.model.Move;
+import it.matlice.matlichess.model.MoveBuffer;
+import it.matlice.matlichess.model.Piece;
 import it.matlice.matlichess.model.pieces.*;
 import org.junit.jupiter.api.Test;
 
@@ -262,4 +265,28 @@ public class Promotion {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void promotionPieceInTheMove() {
+
+        ChessboardTest c = new ChessboardTest();
+
+        c.setKing(new King(PieceColor.WHITE), "E1");
+        c.setKing(new King(PieceColor.BLACK), "E7");
+
+        c.setPiece(new Pawn(PieceColor.WHITE), "B7");
+
+        // every promotion is a distinct move
+        MoveBuffer moves = c.getAvailableMoves(new Location("B7"));
+        assertEquals(4, moves.size());
+        for (int i = 0; i < moves.size(); i++) assertTrue(Move.isPromotion(moves.get(i)));
+
+        // the piece in the move wins over the one set with setPromotion
+        c.setPromotion(PieceColor.WHITE, Queen.class);
+        c.move("b7b8r");
+        assertEquals(c.getPieceAt(new Location("B8")).getName(), "Rook");
+        c.unmakeMove();
+        assertEquals("b7b8n", Move.toString(c.findMove(new Location("B7").square(), new Location("B8").square(), Piece.KNIGHT)));
+
+    }
+
+}
@@ -132,4 +132,25 @@ public class UnderCheckControl {
 
     }
 
+    @org.junit.jupiter.api.Test
+    public void squareAttackedTest(){
+        ChessboardTest c = new ChessboardTest();
+        c.setKing(new King(PieceColor.WHITE), new Location("E1"));
+        c.setKing(new King(PieceColor.BLACK), new Location("E8"));
+        c.setPiece(new Pawn(PieceColor.BLACK), new Location("D5"));
+        c.setPiece(new Rook(PieceColor.BLACK), new Location("A3"));
+        c.setPiece(new Knight(PieceColor.WHITE), new Location("C3"));
+
+        // a pawn attacks diagonally, not the square in front of it
+        assertTrue(c.isSquareAttacked(new Location("C4"), PieceColor.BLACK));
+        assertFalse(c.isSquareAttacked(new Location("D4"), PieceColor.BLACK));
+        // the rook is stopped by the knight
+        assertTrue(c.isSquareAttacked(new Location("C3"), PieceColor.BLACK));
+        assertFalse(c.isSquareAttacked(new Location("D3"), PieceColor.BLACK));
+        // the kings attack the squares around them
+        assertTrue(c.isSquareAttacked(new Location("D7"), PieceColor.BLACK));
+        assertTrue(c.isSquareAttacked(new Location("D5"), PieceColor.WHITE));
+        assertFalse(c.isSquareAttacked(new Location("E8"), PieceColor.WHITE));
+    }
+
 }